@@ -19,13 +19,18 @@
 package org.formic;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.PropertyHelper;
+
+import org.formic.ant.util.PropertyIndex;
 
 /**
  * Context that contains the current state of the install process including any
@@ -35,7 +40,11 @@ import org.apache.tools.ant.Project;
  */
 public class InstallContext
 {
+  // values and keyIndex are both guarded by the values lock.
   private Map values = new HashMap();
+  private SortedSet keyIndex = new TreeSet();
+  private volatile int version;
+  private volatile ResponseRecorder recorder;
 
   /**
    * Determines if this context contains the supplied key.
@@ -45,7 +54,9 @@ public class InstallContext
    */
   public boolean containsKey(Object key)
   {
-    return values.containsKey(key);
+    synchronized(values){
+      return values.containsKey(key);
+    }
   }
 
   /**
@@ -56,8 +67,16 @@ public class InstallContext
    */
   public Object getValue(Object key)
   {
-    return values.containsKey(key) ?
-      values.get(key) : getProject().getProperties().get(key);
+    synchronized(values){
+      if(values.containsKey(key)){
+        return values.get(key);
+      }
+    }
+    if(key == null){
+      return null;
+    }
+    return PropertyHelper.getPropertyHelper(getProject())
+      .getProperty(key.toString());
   }
 
   /**
@@ -75,29 +94,18 @@ public class InstallContext
    * Gets all keys that have the specified prefix.
    *
    * @param prefix The prefix.
+   * @param sort true to sort the keys, false to return context keys
+   * followed by those of ant properties.
    * @return array of keys.
    */
   public String[] getKeysByPrefix(String prefix, boolean sort)
   {
-    ArrayList results = new ArrayList();
-    for (Iterator ii = values.keySet().iterator(); ii.hasNext();){
-      String key = (String)ii.next();
-      if(key.startsWith(prefix)){
-        results.add(key);
-      }
-    }
-
-    Hashtable properties = getProject().getProperties();
-    for (Iterator ii = properties.keySet().iterator(); ii.hasNext();){
-      String key = (String)ii.next();
-      if(key.startsWith(prefix) && !results.contains(key)){
-        results.add(key);
-      }
-    }
-
-    if (sort){
-      Collections.sort(results);
+    Collection results = sort ?
+      (Collection)new TreeSet() : (Collection)new LinkedHashSet();
+    synchronized(values){
+      results.addAll(PropertyIndex.subSet(keyIndex, prefix));
     }
+    results.addAll(PropertyIndex.get(getProject()).getNames(prefix));
 
     return (String[])results.toArray(new String[results.size()]);
   }
@@ -110,7 +118,17 @@ public class InstallContext
    */
   public void setValue(Object key, Object value)
   {
-    values.put(key, value);
+    ResponseRecorder recorder = this.recorder;
+    if(recorder != null){
+      recorder.valueSet(key, value);
+    }
+    version++;
+    synchronized(values){
+      values.put(key, value);
+      if(key instanceof String){
+        keyIndex.add(key);
+      }
+    }
     Installer.getProject().setProperty(
         key.toString(), value != null ? value.toString() : (String)value);
   }
@@ -123,7 +141,49 @@ public class InstallContext
    */
   public Object removeValue(Object key)
   {
-    return values.remove(key);
+    ResponseRecorder recorder = this.recorder;
+    if(recorder != null){
+      recorder.valueSet(key, null);
+    }
+    version++;
+    synchronized(values){
+      keyIndex.remove(key);
+      return values.remove(key);
+    }
+  }
+
+  /**
+   * Gets a number which changes whenever a value in this context or a
+   * property of the ant project is set, so that results computed from the
+   * context can be reused until it differs.
+   *
+   * @return The current version.
+   */
+  public int getVersion()
+  {
+    Project project = getProject();
+    return version +
+      (project != null ? PropertyIndex.get(project).getModificationCount() : 0);
+  }
+
+  /**
+   * Gets the recorder recording the values set in this context.
+   *
+   * @return The recorder or null if not recording.
+   */
+  public ResponseRecorder getRecorder()
+  {
+    return recorder;
+  }
+
+  /**
+   * Sets the recorder to record the values set in this context.
+   *
+   * @param recorder The recorder or null to stop recording.
+   */
+  public void setRecorder(ResponseRecorder recorder)
+  {
+    this.recorder = recorder;
   }
 
   /**
@@ -133,7 +193,9 @@ public class InstallContext
    */
   public Iterator keys()
   {
-    return values.keySet().iterator();
+    synchronized(values){
+      return new ArrayList(values.keySet()).iterator();
+    }
   }
 
   /**
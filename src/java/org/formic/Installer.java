@@ -29,8 +29,9 @@ import java.net.URL;
 
 import java.text.MessageFormat;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.MissingResourceException;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.ResourceBundle;
@@ -45,10 +46,12 @@ import com.jgoodies.looks.plastic.PlasticTheme;
 import org.apache.commons.lang.StringUtils;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.ExitStatusException;
 import org.apache.tools.ant.Project;
 
 import org.formic.ant.util.AntUtils;
 
+import org.formic.util.PayloadStager;
 import org.formic.util.ResourceBundleAggregate;
 
 import org.formic.util.dialog.gui.GuiDialogs;
@@ -56,6 +59,8 @@ import org.formic.util.dialog.gui.GuiDialogs;
 import org.formic.wizard.Wizard;
 import org.formic.wizard.WizardBuilder;
 
+import org.formic.wizard.impl.headless.HeadlessWizard;
+
 import org.pietschy.wizard.I18n;
 
 import org.slf4j.Logger;
@@ -70,11 +75,14 @@ public class Installer
 {
   private static final Logger logger = LoggerFactory.getLogger(Installer.class);
 
+  private static final Map formats = new HashMap();
+
   private static ResourceBundleAggregate resourceBundle;
   private static Project project;
   private static Dimension dimension;
   private static Image image;
   private static boolean consoleMode;
+  private static boolean headless;
   private static boolean uninstall;
 
   private static InstallContext context = new InstallContext();
@@ -119,6 +127,12 @@ public class Installer
     String name = uninstall ? "Uninstaller" : "Installer";
     logger.info("Running " + name + "...");
 
+    // unattended install driven by a response file: no swing or charva.
+    String response = properties.getProperty("formic.response");
+    if(response != null){
+      return runHeadless(properties, paths, name, response);
+    }
+
     consoleMode = "true".equalsIgnoreCase(properties.getProperty("formic.console"));
     if(consoleMode &&
         !"true".equalsIgnoreCase(Installer.getStringOrDefault("console.support", "true")))
@@ -143,15 +157,80 @@ public class Installer
       Integer.parseInt(getString("wizard.width", "600")),
       Integer.parseInt(getString("wizard.height", "400")));
 
+    stage(properties);
+
+    // record the session to a response file for unattended replay.
+    String record = properties.getProperty("formic.record");
+    if(record != null){
+      context.setRecorder(new ResponseRecorder(new File(record)));
+    }
+
     Wizard wizard = WizardBuilder.build(paths, consoleMode);
     wizard.showWizard(properties.getProperty("formic.action"));
     wizard.waitFor();
 
+    // written when the install began, unless the wizard had no install step.
+    ResponseRecorder recorder = context.getRecorder();
+    if(recorder != null && !wizard.wasCanceled()){
+      recorder.write();
+    }
+    context.setRecorder(null);
+
     logger.info(name + " Finished.");
 
     return !wizard.wasCanceled();
   }
 
+  /**
+   * Runs the installer unattended, using the values of the supplied response
+   * file in place of user input.
+   *
+   * @param properties Installer properties.
+   * @param paths List of wizard paths.
+   * @param name The display name of the installer.
+   * @param response The path of the response file.
+   * @return true if the installation completed successfully.
+   * @throws ExitStatusException if the installation did not complete, with
+   * the headless wizard's exit code as the status.
+   */
+  private static boolean runHeadless(
+      Properties properties, List paths, String name, String response)
+  {
+    headless = true;
+    System.setProperty("java.awt.headless", "true");
+
+    stage(properties);
+
+    String result = properties.getProperty("formic.result");
+    HeadlessWizard wizard = WizardBuilder.buildHeadless(paths,
+        new File(response), result != null ? new File(result) : null);
+    wizard.showWizard(properties.getProperty("formic.action"));
+
+    logger.info(name + " Finished.");
+
+    if(wizard.wasCanceled()){
+      throw new ExitStatusException(
+          name + " aborted: " + wizard.getMessage(), wizard.getExitCode());
+    }
+    return true;
+  }
+
+  /**
+   * Starts extracting any payloads to stage while the wizard runs.
+   *
+   * @param properties Installer properties.
+   */
+  private static void stage(Properties properties)
+  {
+    String stage = properties.getProperty("formic.stage");
+    if(stage != null && !uninstall){
+      String[] resources = StringUtils.split(stage, ", ");
+      for (int ii = 0; ii < resources.length; ii++){
+        PayloadStager.stage(resources[ii]);
+      }
+    }
+  }
+
   /**
    * Gets the install context.
    *
@@ -197,11 +276,7 @@ public class Installer
    */
   public static String getString(String key)
   {
-    try{
-      return key != null ? getResourceBundle().getString(key) : null;
-    }catch(MissingResourceException mre){
-      return null;
-    }
+    return key != null ? (String)resourceBundle.getValue(key) : null;
   }
 
   /**
@@ -214,11 +289,8 @@ public class Installer
    */
   public static String getStringOrDefault(String key, String dflt)
   {
-    try{
-      return key != null ? getResourceBundle().getString(key) : dflt;
-    }catch(MissingResourceException mre){
-      return dflt;
-    }
+    String value = getString(key);
+    return value != null ? value : dflt;
   }
 
   /**
@@ -259,7 +331,22 @@ public class Installer
   public static String getString(String key, Object[] args)
   {
     String message = getString(key);
-    return MessageFormat.format(message != null ? message : key, args);
+    if(message == null){
+      message = key;
+    }
+
+    MessageFormat format;
+    synchronized(formats){
+      format = (MessageFormat)formats.get(message);
+      if(format == null){
+        format = new MessageFormat(message);
+        formats.put(message, format);
+      }
+    }
+    // formats aren't thread safe, but each is only held for a moment.
+    synchronized(format){
+      return format.format(args);
+    }
   }
 
   /**
@@ -378,6 +465,16 @@ public class Installer
     return consoleMode;
   }
 
+  /**
+   * Determines if the installer is running unattended from a response file.
+   *
+   * @return true if headless, false otherwise.
+   */
+  public static boolean isHeadless()
+  {
+    return headless;
+  }
+
   /**
    * Determines if uninstaller is running.
    *
@@ -0,0 +1,172 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.formic.util.ResponseFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the values supplied during an interactive session, along with the
+ * path of steps taken through the wizard, to a response file which can later
+ * be replayed unattended.
+ * <p/>
+ * The recorder is attached to the {@link InstallContext}, which reports every
+ * value set, while {@link org.formic.wizard.step.AbstractStep#proceed()}
+ * reports each step the user proceeds past.  When the user goes back to an
+ * earlier step and proceeds again, the steps after it are dropped from the
+ * path, so the recorded path is the one ultimately taken through any
+ * branches.  Recording stops once the install begins, at which point the
+ * response file is written along with a checksum of the installer jar.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ResponseRecorder
+{
+  private static final Logger logger =
+    LoggerFactory.getLogger(ResponseRecorder.class);
+
+  /**
+   * Prefix of the response file entries which describe the recording rather
+   * than hold install context values.
+   */
+  public static final String PREFIX = "formic.response.";
+
+  /**
+   * Response file entry holding the checksum of the installer jar.
+   */
+  public static final String CHECKSUM = PREFIX + "checksum";
+
+  /**
+   * Response file entry holding the comma separated names of the steps taken.
+   */
+  public static final String PATH = PREFIX + "path";
+
+  private static String checksum;
+  private static boolean checksumComputed;
+
+  private File file;
+  private Map values = new LinkedHashMap();
+  private LinkedList path = new LinkedList();
+  private boolean written;
+
+  /**
+   * Constructs a new recorder.
+   *
+   * @param file The response file to write.
+   */
+  public ResponseRecorder(File file)
+  {
+    this.file = file;
+  }
+
+  /**
+   * Records a value set in the install context.
+   *
+   * @param key The key.
+   * @param value The value or null if the value was removed.
+   */
+  public synchronized void valueSet(Object key, Object value)
+  {
+    if(written || key == null){
+      return;
+    }
+    // re-insert so the file lists values in the order last supplied.
+    values.remove(key.toString());
+    if(value != null){
+      values.put(key.toString(), value.toString());
+    }
+  }
+
+  /**
+   * Records that the user proceeded past the supplied step.
+   *
+   * @param step The step name.
+   */
+  public synchronized void stepProceeded(String step)
+  {
+    if(written){
+      return;
+    }
+    int index = path.indexOf(step);
+    while(index != -1 && path.size() > index){
+      path.removeLast();
+    }
+    path.add(step);
+  }
+
+  /**
+   * Writes the response file, if not already written, and stops recording.
+   */
+  public synchronized void write()
+  {
+    if(written){
+      return;
+    }
+    written = true;
+
+    Map response = new LinkedHashMap();
+    String checksum = getInstallerChecksum();
+    if(checksum != null){
+      response.put(CHECKSUM, checksum);
+    }
+    response.put(PATH, StringUtils.join(path.iterator(), ','));
+    response.putAll(values);
+
+    try{
+      ResponseFile.store(response, file);
+      logger.info("Recorded " + values.size() + " values to " + file);
+    }catch(IOException ioe){
+      logger.error("Unable to write response file: " + file, ioe);
+    }
+  }
+
+  /**
+   * Gets the checksum of the installer jar, computed once per run.
+   *
+   * @return The checksum or null if the installer is not running from a jar
+   * (ex. during development) or the jar could not be read.
+   */
+  public static synchronized String getInstallerChecksum()
+  {
+    if(!checksumComputed){
+      checksumComputed = true;
+      String classpath = System.getProperty("java.class.path");
+      File jar = classpath != null ? new File(classpath) : null;
+      if(jar != null && jar.isFile()){
+        try{
+          checksum = ResponseFile.checksum(jar);
+        }catch(IOException ioe){
+          logger.warn("Unable to compute checksum of " + jar, ioe);
+        }
+      }
+    }
+    return checksum;
+  }
+}
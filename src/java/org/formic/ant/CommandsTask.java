@@ -0,0 +1,224 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.ant;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+
+import org.apache.tools.ant.types.Commandline;
+
+import org.formic.util.ByteProgress;
+import org.formic.util.CommandBatch;
+import org.formic.util.CommandExecutor;
+
+import org.formic.wizard.step.shared.InstallAction;
+
+/**
+ * Ant task which runs a set of independent external commands concurrently.
+ * <p/>
+ * Each command is logged with its return code and run time as it finishes,
+ * and the running install is notified of the batch's progress.  By default
+ * every command is run and the task fails afterwards if any of them failed;
+ * with <code>failfast</code> no further commands are started once one fails.
+ * <pre>
+ *   &lt;formic:commands threads="4" timeout="60000" failfast="true"&gt;
+ *     &lt;command executable="${install.dir}/bin/register"&gt;
+ *       &lt;arg value="service"/&gt;
+ *     &lt;/command&gt;
+ *     &lt;command executable="ldconfig" timeout="120000"/&gt;
+ *   &lt;/formic:commands&gt;
+ * </pre>
+ *
+ * @author Eric Van Dewoestine
+ */
+public class CommandsTask
+  extends Task
+{
+  private List commands = new ArrayList();
+  private int threads;
+  private long timeout;
+  private boolean failFast;
+  private boolean failOnError = true;
+  private String resultProperty;
+
+  /**
+   * Executes this task.
+   */
+  public void execute()
+    throws BuildException
+  {
+    if(commands.size() == 0){
+      throw new BuildException("At least one nested command must be supplied.");
+    }
+
+    CommandBatch batch = new CommandBatch(threads);
+    batch.setFailFast(failFast);
+    for (Iterator ii = commands.iterator(); ii.hasNext();){
+      Command command = (Command)ii.next();
+      if(command.commandline.getExecutable() == null){
+        throw new BuildException("Attribute 'executable' must be set on command.");
+      }
+      batch.add(command.commandline.getCommandline(),
+          command.timeout != 0 ? command.timeout : timeout);
+    }
+
+    final ByteProgress progress = new ByteProgress(
+        ByteProgress.ITEMS, batch.size(), ByteProgress.DEFAULT_INTERVAL,
+        InstallAction.getProgressListener());
+    batch.setListener(new CommandBatch.Listener(){
+      public void commandStarted(int index, String[] cmd){
+        log("Executing: " + StringUtils.join(cmd, ' '), Project.MSG_VERBOSE);
+      }
+      public void commandFinished(int index, CommandExecutor executor){
+        progress.add(1);
+        String message = executor + ": " + executor.getReturnCode() +
+          (executor.isTimedOut() ? " (timed out)" : "") +
+          (executor.isInterrupted() ? " (interrupted)" : "") +
+          " [" + executor.getDuration() + "ms]";
+        if(CommandBatch.isFailure(executor)){
+          log(message, Project.MSG_ERR);
+          String error = executor.getErrorMessage();
+          if(error != null && error.trim().length() > 0){
+            log(error.trim(), Project.MSG_ERR);
+          }
+        }else{
+          log(message);
+        }
+      }
+    });
+
+    CommandBatch.Result result;
+    try{
+      result = batch.execute();
+    }catch(InterruptedException ie){
+      Thread.currentThread().interrupt();
+      throw new BuildException(ie);
+    }finally{
+      progress.finish();
+    }
+
+    CommandExecutor[] failures = result.getFailures();
+    log("Executed " + result.getCompleted() + " of " + batch.size() +
+        " commands in " + result.getDuration() + "ms, " +
+        failures.length + " failed.", Project.MSG_VERBOSE);
+    if(resultProperty != null){
+      getProject().setNewProperty(
+          resultProperty, String.valueOf(failures.length));
+    }
+    if(failOnError && !result.isSuccessful()){
+      throw new BuildException(failures.length + " of " + batch.size() +
+          " commands failed" + (failures.length > 0 ? ": " + failures[0] : "."),
+          getLocation());
+    }
+  }
+
+  /**
+   * Sets the maximum number of commands to run at once.  Defaults to the
+   * number of available processors.
+   *
+   * @param threads The number of threads.
+   */
+  public void setThreads(int threads)
+  {
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the default timeout, in milliseconds, for each command.
+   *
+   * @param timeout The timeout.
+   */
+  public void setTimeout(long timeout)
+  {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Sets whether to stop starting commands once any command fails.
+   *
+   * @param failFast true to fail fast, false to run all commands.
+   */
+  public void setFailfast(boolean failFast)
+  {
+    this.failFast = failFast;
+  }
+
+  /**
+   * Sets whether the build fails if any command fails.  Defaults to true.
+   *
+   * @param failOnError true to fail the build, false otherwise.
+   */
+  public void setFailonerror(boolean failOnError)
+  {
+    this.failOnError = failOnError;
+  }
+
+  /**
+   * Sets the name of a property to set to the number of failed commands.
+   *
+   * @param resultProperty The property name.
+   */
+  public void setResultproperty(String resultProperty)
+  {
+    this.resultProperty = resultProperty;
+  }
+
+  /**
+   * Creates a new nested command.
+   *
+   * @return The command.
+   */
+  public Command createCommand()
+  {
+    Command command = new Command();
+    commands.add(command);
+    return command;
+  }
+
+  /**
+   * A command to execute.
+   */
+  public static class Command
+  {
+    private Commandline commandline = new Commandline();
+    private long timeout;
+
+    public void setExecutable(String executable)
+    {
+      commandline.setExecutable(executable);
+    }
+
+    public void setTimeout(long timeout)
+    {
+      this.timeout = timeout;
+    }
+
+    public Commandline.Argument createArg()
+    {
+      return commandline.createArgument();
+    }
+  }
+}
@@ -77,6 +77,16 @@ public class InstallerTask
           console != null ? console : "false");
     }
 
+    // unattended install using the values of a response file, or recording
+    // of an interactive session to one.
+    String[] names = {"formic.response", "formic.result", "formic.record"};
+    for (int ii = 0; ii < names.length; ii++){
+      String value = getProject().getProperty(names[ii]);
+      if(value != null){
+        getProperties().setProperty(names[ii], value);
+      }
+    }
+
     Runtime.getRuntime().addShutdownHook(new Thread(){
       public void run() {
         // run canceled target if install canceled and target exists.
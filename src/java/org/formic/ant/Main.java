@@ -25,6 +25,7 @@ import java.util.Vector;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.BuildLogger;
 import org.apache.tools.ant.DefaultLogger;
+import org.apache.tools.ant.ExitStatusException;
 import org.apache.tools.ant.Project;
 
 import org.apache.tools.ant.launch.AntMain;
@@ -80,6 +81,9 @@ public class Main
     try {
       runBuild(coreLoader);
       exitCode = 0;
+    } catch(ExitStatusException ese) {
+      System.err.println(ese.getMessage());
+      exitCode = ese.getStatus();
     } catch(BuildException be) {
       System.err.println(be.getMessage());
     } catch(Throwable exc) {
@@ -19,11 +19,15 @@
 package org.formic.ant;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
+
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
@@ -38,6 +42,8 @@ import org.formic.ant.type.LibSet;
 
 import org.formic.ant.util.AntUtils;
 
+import org.formic.util.PayloadIndex;
+
 import com.simontuffs.onejar.ant.OneJarTask;
 
 /**
@@ -55,6 +61,8 @@ public class PackageTask
   private String buildDir;
   private OneJarTask jar;
   private List libsets = new ArrayList();
+  private List filesets = new ArrayList();
+  private boolean index = true;
 
   /**
    * Executes this task.
@@ -113,9 +121,16 @@ public class PackageTask
       concat.addText("com.apple.mrj.application.apple.menu.about.name=Installer");
       concat.execute();
 
+      if(index){
+        writePayloadIndex(new File(buildDir + PayloadIndex.RESOURCE));
+      }
+
       ZipFileSet files = new ZipFileSet();
       files.setDir(new File(buildDir));
       files.setIncludes("one-jar.properties");
+      if(index){
+        files.appendIncludes(new String[]{PayloadIndex.RESOURCE.substring(1)});
+      }
       addFileset(files);
 
       jar.execute();
@@ -129,6 +144,63 @@ public class PackageTask
     }
   }
 
+  /**
+   * Writes the payload index for all zip archives included in this task's
+   * filesets.
+   *
+   * @param file The file to write the index to.
+   */
+  private void writePayloadIndex(File file)
+    throws IOException
+  {
+    PayloadIndex payload = new PayloadIndex();
+    for (Iterator ii = filesets.iterator(); ii.hasNext();){
+      FileSet fileset = (FileSet)ii.next();
+      String prefix = "";
+      if(fileset instanceof ZipFileSet){
+        ZipFileSet zipset = (ZipFileSet)fileset;
+        if(zipset.getSrc(getProject()) != null){
+          continue;
+        }
+        prefix = zipset.getPrefix(getProject());
+        if(prefix.length() > 0 && !prefix.endsWith("/")){
+          prefix += '/';
+        }
+      }
+
+      File dir = fileset.getDir(getProject());
+      String[] names =
+        fileset.getDirectoryScanner(getProject()).getIncludedFiles();
+      for (int jj = 0; jj < names.length; jj++){
+        String name = names[jj].replace('\\', '/');
+        if(name.toLowerCase().endsWith(".zip")){
+          log("Indexing payload " + name, Project.MSG_VERBOSE);
+          payload.add(
+              PayloadIndex.index(new File(dir, names[jj]), "/" + prefix + name));
+        }
+      }
+    }
+
+    FileOutputStream out = null;
+    try{
+      out = new FileOutputStream(file);
+      payload.write(out);
+      out.close();
+    }finally{
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Sets whether to embed an index of the payload archives (default true).
+   *
+   * @param index true to embed the index, false otherwise.
+   */
+  public void setIndex(boolean index)
+  {
+    this.index = index;
+  }
+
   /**
    * Sets the destFile for this instance.
    *
@@ -221,6 +293,7 @@ public class PackageTask
    */
   public void addFileset(FileSet _fileset)
   {
+    filesets.add(_fileset);
     getJar().addFileset(_fileset);
   }
 
@@ -229,6 +302,7 @@ public class PackageTask
    */
   public void addZipfileset(ZipFileSet _fileset)
   {
+    filesets.add(_fileset);
     getJar().addZipfileset(_fileset);
   }
 
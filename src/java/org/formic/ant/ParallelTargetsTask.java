@@ -0,0 +1,344 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.ant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Target;
+import org.apache.tools.ant.Task;
+
+import org.apache.tools.ant.property.LocalProperties;
+import org.apache.tools.ant.property.LocalPropertyStack;
+
+import org.formic.util.WorkerPool;
+
+import org.formic.wizard.step.shared.InstallAction;
+
+/**
+ * Ant task which executes the supplied targets, along with their
+ * dependencies, concurrently where the dependency graph allows.
+ * <p/>
+ * Each target runs only after all the targets it depends on have
+ * completed, and at most <code>threads</code> targets run at once.
+ * Dependencies which have already run, either as dependencies of the target
+ * containing this task or by an earlier paralleltargets task, are not
+ * executed again.  If any target fails, no further targets are started and
+ * the first failure is rethrown once the running targets finish.
+ * <pre>
+ *   &lt;formic:paralleltargets targets="unpack.core, unpack.docs, chmod"/&gt;
+ * </pre>
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ParallelTargetsTask
+  extends Task
+{
+  private static final String EXECUTED = "formic.paralleltargets.executed";
+
+  private String[] targets = new String[0];
+  private int threads;
+
+  /**
+   * Executes this task.
+   */
+  public void execute()
+    throws BuildException
+  {
+    if(targets.length == 0){
+      throw new BuildException("Attribute 'targets' must be set.");
+    }
+
+    Hashtable all = getProject().getTargets();
+    Vector sorted = getProject().topoSort(targets, all, false);
+
+    // skip dependencies which have already been executed: those of the
+    // owning target and those run by previous paralleltargets tasks.
+    Set executed = getExecuted();
+    Set skip = new HashSet();
+    synchronized(executed){
+      skip.addAll(executed);
+    }
+    Target owner = getOwningTarget();
+    if(owner != null && all.get(owner.getName()) == owner){
+      Vector done = getProject().topoSort(owner.getName(), all, false);
+      for (Iterator ii = done.iterator(); ii.hasNext();){
+        skip.add(((Target)ii.next()).getName());
+      }
+    }
+    List requested = Arrays.asList(targets);
+    for (Iterator ii = sorted.iterator(); ii.hasNext();){
+      String name = ((Target)ii.next()).getName();
+      if(skip.contains(name) && !requested.contains(name)){
+        ii.remove();
+      }
+    }
+
+    log("executing targets " + sorted + " using up to " +
+        (threads > 0 ? threads : WorkerPool.defaultSize()) + " threads.",
+        Project.MSG_VERBOSE);
+
+    LocalProperties locals = LocalProperties.get(getProject());
+    Graph graph = new Graph(sorted, InstallAction.getTargetStack(),
+        locals, (LocalPropertyStack)locals.get(), executed);
+    WorkerPool pool = new WorkerPool("paralleltargets", threads);
+    try{
+      graph.run(pool);
+    }finally{
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Gets the names of the targets executed by paralleltargets tasks in this
+   * project.
+   *
+   * @return Synchronized set of target names.
+   */
+  private Set getExecuted()
+  {
+    synchronized(getProject()){
+      Set executed = (Set)getProject().getReference(EXECUTED);
+      if(executed == null){
+        executed = Collections.synchronizedSet(new HashSet());
+        getProject().addReference(EXECUTED, executed);
+      }
+      return executed;
+    }
+  }
+
+  /**
+   * Gets the names of the targets to execute.
+   *
+   * @return Array of target names.
+   */
+  public String[] getTargetNames()
+  {
+    return targets;
+  }
+
+  /**
+   * Gets all the targets which will be executed for the supplied target
+   * names in dependency order.  Unknown target names are ignored.
+   *
+   * @param project The project containing the targets.
+   * @param names The target names.
+   * @return List of Target.
+   */
+  public static List getTargets(Project project, String[] names)
+  {
+    Hashtable all = project.getTargets();
+    ArrayList known = new ArrayList();
+    for (int ii = 0; ii < names.length; ii++){
+      if(all.containsKey(names[ii])){
+        known.add(names[ii]);
+      }
+    }
+    if(known.size() == 0){
+      return new ArrayList();
+    }
+    return project.topoSort(
+        (String[])known.toArray(new String[known.size()]), all, false);
+  }
+
+  /**
+   * Sets a comma separated list of targets to execute.
+   *
+   * @param targets The target names.
+   */
+  public void setTargets(String targets)
+  {
+    this.targets = StringUtils.stripAll(StringUtils.split(targets, ','));
+  }
+
+  /**
+   * Sets the maximum number of targets to execute at once.  Defaults to the
+   * number of available processors.
+   *
+   * @param threads The number of threads.
+   */
+  public void setThreads(int threads)
+  {
+    this.threads = threads;
+  }
+
+  /**
+   * Dependency graph of the targets being executed which schedules each
+   * target as soon as its dependencies have completed.
+   */
+  private class Graph
+  {
+    private int pending;
+    private int running;
+    private Map dependencies = new HashMap();
+    private Map dependents = new HashMap();
+    private List stack;
+    private LocalProperties locals;
+    private LocalPropertyStack localStack;
+    private Set executed;
+    private BuildException error;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param targets The targets to execute, in dependency order.
+     * @param stack The install's target stack of the thread executing this
+     * task, or null if not running an install.
+     * @param locals The project's local properties.
+     * @param localStack The local property stack of the thread executing this
+     * task.
+     * @param executed Set to add the names of successfully executed targets
+     * to.
+     */
+    public Graph(
+        List targets,
+        List stack,
+        LocalProperties locals,
+        LocalPropertyStack localStack,
+        Set executed)
+    {
+      this.stack = stack;
+      this.locals = locals;
+      this.localStack = localStack;
+      this.executed = executed;
+      pending = targets.size();
+
+      Set names = new HashSet();
+      for (Iterator ii = targets.iterator(); ii.hasNext();){
+        names.add(((Target)ii.next()).getName());
+      }
+
+      for (Iterator ii = targets.iterator(); ii.hasNext();){
+        Target target = (Target)ii.next();
+        int count = 0;
+        for (Enumeration jj = target.getDependencies(); jj.hasMoreElements();){
+          String name = (String)jj.nextElement();
+          // dependencies which already ran are not part of the graph.
+          if(!names.contains(name)){
+            continue;
+          }
+          List list = (List)dependents.get(name);
+          if(list == null){
+            list = new ArrayList();
+            dependents.put(name, list);
+          }
+          list.add(target);
+          count++;
+        }
+        dependencies.put(target, new Integer(count));
+      }
+    }
+
+    /**
+     * Runs all targets in the graph, blocking until they have completed or
+     * one of them fails.
+     *
+     * @param pool The pool to run the targets on.
+     */
+    public synchronized void run(WorkerPool pool)
+      throws BuildException
+    {
+      for (Iterator ii = dependencies.keySet().iterator(); ii.hasNext();){
+        Target target = (Target)ii.next();
+        if(((Integer)dependencies.get(target)).intValue() == 0){
+          start(pool, target);
+        }
+      }
+
+      while((error == null && pending > 0) || running > 0){
+        try{
+          wait();
+        }catch(InterruptedException ie){
+          Thread.currentThread().interrupt();
+          throw new BuildException(ie);
+        }
+      }
+
+      if(error != null){
+        throw error;
+      }
+    }
+
+    private void start(final WorkerPool pool, final Target target)
+    {
+      running++;
+      pool.execute(new Runnable(){
+        public void run(){
+          // workers are shared and reused, so give each target a copy of the
+          // caller's stacks rather than whatever the worker last held.
+          locals.set(localStack.copy());
+          InstallAction.setTargetStack(stack);
+          BuildException failure = null;
+          try{
+            target.performTasks();
+          }catch(BuildException be){
+            failure = be;
+          }catch(Throwable t){
+            failure = new BuildException(t);
+          }finally{
+            locals.set(new LocalPropertyStack());
+            InstallAction.setTargetStack(null);
+            finished(pool, target, failure);
+          }
+        }
+      });
+    }
+
+    private synchronized void finished(
+        WorkerPool pool, Target target, BuildException failure)
+    {
+      running--;
+      pending--;
+      if(failure == null){
+        executed.add(target.getName());
+      }else if(error == null){
+        error = failure;
+      }
+
+      if(error == null){
+        List list = (List)dependents.get(target.getName());
+        if(list != null){
+          for (Iterator ii = list.iterator(); ii.hasNext();){
+            Target dependent = (Target)ii.next();
+            int count = ((Integer)dependencies.get(dependent)).intValue() - 1;
+            dependencies.put(dependent, new Integer(count));
+            if(count == 0){
+              start(pool, dependent);
+            }
+          }
+        }
+      }
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.ant;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+
+import org.apache.tools.ant.types.FileSet;
+
+import org.formic.util.TokenReplacer;
+
+/**
+ * Ant task which replaces any number of tokens in a file or set of files,
+ * scanning each file only once and processing files concurrently.
+ * <p/>
+ * Files which contain none of the tokens are left untouched.
+ * <pre>
+ *   &lt;formic:replace dir="${install.dir}/conf" includes="**&#47;*.xml"&gt;
+ *     &lt;replacefilter token="@HOME@" value="${install.dir}"/&gt;
+ *     &lt;replacefilter token="@PORT@" value="${port}"/&gt;
+ *   &lt;/formic:replace&gt;
+ * </pre>
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ReplaceTask
+  extends Task
+{
+  private File file;
+  private String encoding;
+  private int threads;
+  private FileSet dirset;
+  private List filesets = new ArrayList();
+  private List filters = new ArrayList();
+  private Replacefilter filter;
+
+  /**
+   * Executes this task.
+   */
+  public void execute()
+    throws BuildException
+  {
+    Map tokens = new HashMap();
+    for (Iterator ii = filters.iterator(); ii.hasNext();){
+      Replacefilter filter = (Replacefilter)ii.next();
+      if(filter.token == null || filter.token.length() == 0){
+        throw new BuildException("Attribute 'token' must be set on replacefilter.");
+      }
+      if(!tokens.containsKey(filter.token)){
+        tokens.put(filter.token, filter.value != null ? filter.value : "");
+      }
+    }
+    if(tokens.size() == 0){
+      throw new BuildException("At least one replacefilter must be supplied.");
+    }
+
+    List files = new ArrayList();
+    if(file != null){
+      if(!file.exists()){
+        throw new BuildException("Could not find file: " + file);
+      }
+      files.add(file);
+    }
+    List sets = new ArrayList(filesets);
+    if(dirset != null){
+      sets.add(dirset);
+    }
+    for (Iterator ii = sets.iterator(); ii.hasNext();){
+      FileSet fileset = (FileSet)ii.next();
+      DirectoryScanner scanner = fileset.getDirectoryScanner(getProject());
+      String[] names = scanner.getIncludedFiles();
+      for (int jj = 0; jj < names.length; jj++){
+        files.add(new File(scanner.getBasedir(), names[jj]));
+      }
+    }
+    if(file == null && sets.size() == 0){
+      throw new BuildException(
+          "Either the file or dir attribute or a nested fileset must be set.");
+    }
+
+    try{
+      int modified = replace(files, tokens, encoding, threads);
+      log("Replaced tokens in " + modified + " of " + files.size() + " files.",
+          Project.MSG_VERBOSE);
+    }catch(IOException ioe){
+      throw new BuildException(ioe, getLocation());
+    }
+  }
+
+  /**
+   * Replaces the supplied tokens in the given files.
+   *
+   * @param files List of File.
+   * @param tokens Map of token to the value to replace it with.
+   * @param encoding The file encoding, or null for the platform default.
+   * @param threads The number of threads, or a value less than 1 to use one
+   * per available processor.
+   * @return The number of files modified.
+   */
+  public static int replace(List files, Map tokens, String encoding, int threads)
+    throws IOException
+  {
+    if(files.size() == 0){
+      return 0;
+    }
+    return new TokenReplacer(tokens).replace(
+        (File[])files.toArray(new File[files.size()]), encoding, threads);
+  }
+
+  /**
+   * Sets the file to replace tokens in.
+   *
+   * @param file The file.
+   */
+  public void setFile(File file)
+  {
+    this.file = file;
+  }
+
+  /**
+   * Sets the directory containing the files to replace tokens in.
+   *
+   * @param dir The directory.
+   */
+  public void setDir(File dir)
+  {
+    getDirset().setDir(dir);
+  }
+
+  /**
+   * Sets the patterns of the files under dir to include.
+   *
+   * @param includes Comma separated list of patterns.
+   */
+  public void setIncludes(String includes)
+  {
+    getDirset().setIncludes(includes);
+  }
+
+  /**
+   * Sets the patterns of the files under dir to exclude.
+   *
+   * @param excludes Comma separated list of patterns.
+   */
+  public void setExcludes(String excludes)
+  {
+    getDirset().setExcludes(excludes);
+  }
+
+  /**
+   * Sets the encoding of the files.  Defaults to the platform encoding.
+   *
+   * @param encoding The encoding.
+   */
+  public void setEncoding(String encoding)
+  {
+    this.encoding = encoding;
+  }
+
+  /**
+   * Sets the maximum number of files to process at once.  Defaults to the
+   * number of available processors.
+   *
+   * @param threads The number of threads.
+   */
+  public void setThreads(int threads)
+  {
+    this.threads = threads;
+  }
+
+  /**
+   * Sets a single token to replace.
+   *
+   * @param token The token.
+   */
+  public void setToken(String token)
+  {
+    getFilter().token = token;
+  }
+
+  /**
+   * Sets the value to replace the single token with.
+   *
+   * @param value The value.
+   */
+  public void setValue(String value)
+  {
+    getFilter().value = value;
+  }
+
+  /**
+   * Adds a set of files to replace tokens in.
+   *
+   * @param fileset The fileset.
+   */
+  public void addFileset(FileSet fileset)
+  {
+    filesets.add(fileset);
+  }
+
+  /**
+   * Creates a new token / value pair.
+   *
+   * @return The replacefilter.
+   */
+  public Replacefilter createReplacefilter()
+  {
+    Replacefilter filter = new Replacefilter();
+    filters.add(filter);
+    return filter;
+  }
+
+  private FileSet getDirset()
+  {
+    if(dirset == null){
+      dirset = new FileSet();
+      dirset.setProject(getProject());
+    }
+    return dirset;
+  }
+
+  private Replacefilter getFilter()
+  {
+    if(filter == null){
+      filter = createReplacefilter();
+    }
+    return filter;
+  }
+
+  /**
+   * A token and the value to replace it with.
+   */
+  public static class Replacefilter
+  {
+    private String token;
+    private String value;
+
+    public void setToken(String token)
+    {
+      this.token = token;
+    }
+
+    public void setValue(String value)
+    {
+      this.value = value;
+    }
+  }
+}
@@ -18,27 +18,57 @@
  */
 package org.formic.ant;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.PropertyHelper;
 import org.apache.tools.ant.Task;
 
-import org.apache.tools.ant.taskdefs.Move;
+import org.apache.tools.ant.types.FileSet;
 
 import org.apache.velocity.VelocityContext;
 
 import org.apache.velocity.app.Velocity;
 
+import org.apache.velocity.context.AbstractContext;
+
+import org.formic.util.TokenReplacer;
+import org.formic.util.WorkerPool;
+
 import org.formic.wizard.step.shared.TemplateStepAction;
 
 /**
- * Ant task to evaluate a velocity template.
+ * Ant task to evaluate a velocity template, or every template in a set of
+ * files.
+ * <p/>
+ * Templates see the project's properties through a read only view rather
+ * than a copy.  Files from nested filesets are evaluated concurrently and
+ * written to the same relative path under <code>todir</code>, or back over
+ * themselves if <code>todir</code> is not set.  Outputs identical to the file
+ * already at the destination are not rewritten.
+ * <pre>
+ *   &lt;formic:template todir="${install.dir}/conf" threads="4"&gt;
+ *     &lt;fileset dir="templates" includes="**&#47;*.xml"/&gt;
+ *   &lt;/formic:template&gt;
+ * </pre>
  *
  * @author Eric Van Dewoestine
  */
@@ -47,48 +77,140 @@ public class TemplateTask
 {
   private File template;
   private File out;
-  private boolean move;
+  private File todir;
+  private int threads;
+  private List filesets = new ArrayList();
 
   public void execute()
     throws BuildException
   {
-    if (template == null || out == null){
-      throw new BuildException("Both template and out attributes must be supplied");
+    if (filesets.size() == 0){
+      if (template == null || out == null){
+        throw new BuildException(
+            "Both template and out attributes must be supplied");
+      }
+      log("Evaluating template: " + template);
+      evaluate(new ProjectContext(getProject()), template, out);
+      return;
+    }
+
+    if (template != null || out != null){
+      throw new BuildException(
+          "The template and out attributes cannot be used with nested filesets");
     }
 
-    if (template.equals(out)){
-      out = new File(out.getAbsolutePath() + ".out");
-      move = true;
+    List sources = new ArrayList();
+    List targets = new ArrayList();
+    for (Iterator ii = filesets.iterator(); ii.hasNext();){
+      FileSet fileset = (FileSet)ii.next();
+      DirectoryScanner scanner = fileset.getDirectoryScanner(getProject());
+      File basedir = scanner.getBasedir();
+      String[] files = scanner.getIncludedFiles();
+      for (int jj = 0; jj < files.length; jj++){
+        sources.add(new File(basedir, files[jj]));
+        targets.add(todir != null ?
+            new File(todir, files[jj]) : new File(basedir, files[jj]));
+      }
+    }
+    if (sources.size() == 0){
+      return;
     }
 
-    HashMap values = new HashMap();
+    log("Evaluating " + sources.size() + " templates" +
+        (todir != null ? " to " + todir : ""));
 
-    values.put(TemplateStepAction.INSTALLER_KEY, TemplateStepAction.INSTALLER);
-    values.put(TemplateStepAction.OS_KEY, TemplateStepAction.OS);
-    values.putAll(getProject().getProperties());
+    Rendering rendering = new Rendering(
+        new ProjectContext(getProject()), sources, targets);
+    int count = Math.min(
+        threads > 0 ? threads : WorkerPool.defaultSize(), sources.size());
+    if (count <= 1){
+      rendering.run();
+    }else{
+      WorkerPool pool = new WorkerPool("template", count);
+      for (int ii = 0; ii < count; ii++){
+        pool.execute(rendering);
+      }
+      pool.shutdown();
+      try{
+        pool.join();
+      }catch(InterruptedException ie){
+        Thread.currentThread().interrupt();
+        rendering.failed(new BuildException(ie));
+      }
+    }
+    rendering.checkError();
+  }
 
-    FileReader reader = null;
-    FileWriter writer = null;
+  /**
+   * Evaluates the supplied template, writing the result to the given file
+   * unless it already contains exactly that result.
+   *
+   * @param context The context holding the template values.
+   * @param template The template file.
+   * @param out The output file.
+   */
+  private void evaluate(ProjectContext context, File template, File out)
+    throws BuildException
+  {
+    BufferedReader reader = null;
+    StringWriter writer = new StringWriter();
     try{
-      log("Evaluating template: " + template);
-      reader = new FileReader(this.template);
-      writer = new FileWriter(this.out);
-      VelocityContext context = new VelocityContext(values);
-      Velocity.evaluate(context, writer, TemplateTask.class.getName(), reader);
+      reader = new BufferedReader(new FileReader(template));
+      Velocity.evaluate(
+          new VelocityContext(new HashMap(), context),
+          writer, TemplateTask.class.getName(), reader);
     }catch(Exception e){
-      throw new RuntimeException(e);
+      throw new BuildException("Error evaluating template: " + template, e);
     }finally{
       IOUtils.closeQuietly(reader);
-      IOUtils.closeQuietly(writer);
     }
 
-    if (move){
-      Move move = new Move();
-      move.setProject(getProject());
-      move.setTaskName(getTaskName());
-      move.setFile(out);
-      move.setTofile(template);
-      move.execute();
+    byte[] bytes = writer.toString().getBytes();
+    try{
+      if (out.length() == bytes.length && out.isFile() &&
+          Arrays.equals(read(out), bytes))
+      {
+        log("Unchanged: " + out, Project.MSG_VERBOSE);
+        return;
+      }
+
+      File parent = out.getAbsoluteFile().getParentFile();
+      if (!parent.exists() && !parent.mkdirs() && !parent.isDirectory()){
+        throw new IOException("Unable to create directory: " + parent);
+      }
+
+      // write beside the destination and then rename over it, so that a
+      // failed write never truncates a template evaluated in place.
+      File temp = File.createTempFile("template", ".tmp", parent);
+      boolean written = false;
+      OutputStream output = null;
+      try{
+        output = new FileOutputStream(temp);
+        output.write(bytes);
+        output.close();
+        output = null;
+        written = true;
+      }finally{
+        IOUtils.closeQuietly(output);
+        if (!written){
+          temp.delete();
+        }
+      }
+      TokenReplacer.replaceFile(temp, out);
+    }catch(IOException ioe){
+      throw new BuildException("Error writing template result: " + out, ioe);
+    }
+  }
+
+  private static byte[] read(File file)
+    throws IOException
+  {
+    InputStream in = null;
+    try{
+      in = new FileInputStream(file);
+      return IOUtils.toByteArray(in);
+    }finally{
+      IOUtils.closeQuietly(in);
     }
   }
 
@@ -101,4 +223,151 @@ public class TemplateTask
   {
     this.out = out;
   }
+
+  /**
+   * Sets the directory to write the results of the nested fileset templates
+   * to.
+   *
+   * @param todir The destination directory.
+   */
+  public void setTodir(File todir)
+  {
+    this.todir = todir;
+  }
+
+  /**
+   * Sets the maximum number of templates to evaluate at once.  Defaults to
+   * the number of available processors.
+   *
+   * @param threads The number of threads.
+   */
+  public void setThreads(int threads)
+  {
+    this.threads = threads;
+  }
+
+  /**
+   * Adds a set of templates to evaluate.
+   *
+   * @param fileset The fileset.
+   */
+  public void addFileset(FileSet fileset)
+  {
+    filesets.add(fileset);
+  }
+
+  /**
+   * Work shared by the worker threads, each of which repeatedly claims the
+   * next template to evaluate until none remain or one fails.
+   */
+  private class Rendering
+    implements Runnable
+  {
+    private ProjectContext context;
+    private List sources;
+    private List targets;
+    private int next;
+    private BuildException error;
+
+    public Rendering(ProjectContext context, List sources, List targets)
+    {
+      this.context = context;
+      this.sources = sources;
+      this.targets = targets;
+    }
+
+    public void run()
+    {
+      int index;
+      while ((index = claim()) != -1){
+        try{
+          evaluate(context,
+              (File)sources.get(index), (File)targets.get(index));
+        }catch(BuildException be){
+          failed(be);
+        }catch(Throwable t){
+          failed(new BuildException(t));
+        }
+      }
+    }
+
+    private synchronized int claim()
+    {
+      if (error != null || next >= sources.size()){
+        return -1;
+      }
+      return next++;
+    }
+
+    private synchronized void failed(BuildException be)
+    {
+      if (error == null){
+        error = be;
+      }
+    }
+
+    private synchronized void checkError()
+      throws BuildException
+    {
+      if (error != null){
+        throw error;
+      }
+    }
+  }
+
+  /**
+   * Read only velocity context over the project's properties, along with the
+   * installer and os values available to all templates.  Values set by a
+   * template are stored in the per template context chained in front of it,
+   * so any attempt to modify this context is an error.
+   */
+  private static class ProjectContext
+    extends AbstractContext
+  {
+    private static final long serialVersionUID = 1L;
+
+    private Project project;
+
+    public ProjectContext(Project project)
+    {
+      this.project = project;
+    }
+
+    public Object internalGet(String key)
+    {
+      if (TemplateStepAction.INSTALLER_KEY.equals(key)){
+        return TemplateStepAction.INSTALLER;
+      }
+      if (TemplateStepAction.OS_KEY.equals(key)){
+        return TemplateStepAction.OS;
+      }
+      return PropertyHelper.getPropertyHelper(project).getProperty(key);
+    }
+
+    public Object internalPut(String key, Object value)
+    {
+      throw new UnsupportedOperationException(
+          "Unable to set '" + key + "': template project context is read only");
+    }
+
+    public boolean internalContainsKey(Object key)
+    {
+      return key != null && internalGet(key.toString()) != null;
+    }
+
+    public Object[] internalGetKeys()
+    {
+      List keys = new ArrayList(project.getProperties().keySet());
+      keys.add(TemplateStepAction.INSTALLER_KEY);
+      keys.add(TemplateStepAction.OS_KEY);
+      return keys.toArray();
+    }
+
+    public Object internalRemove(Object key)
+    {
+      throw new UnsupportedOperationException(
+          "Unable to remove '" + key +
+          "': template project context is read only");
+    }
+  }
 }
@@ -20,17 +20,51 @@ package org.formic.ant;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
-import org.apache.commons.io.FilenameUtils;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 
 import org.apache.tools.ant.taskdefs.Expand;
 
+import org.apache.tools.ant.types.Mapper;
+import org.apache.tools.ant.types.PatternSet;
+
+import org.apache.tools.ant.util.FileNameMapper;
+import org.apache.tools.ant.util.FileUtils;
+
+import org.formic.ant.type.FeaturePrefix;
+
+import org.formic.util.ByteProgress;
 import org.formic.util.Extractor;
+import org.formic.util.IndexedArchiveReader;
+import org.formic.util.InstallManifest;
+import org.formic.util.PayloadStager;
+import org.formic.util.PayloadIndex;
+import org.formic.util.ProgressInputStream;
+
+import org.formic.wizard.step.shared.Feature;
+import org.formic.wizard.step.shared.InstallAction;
 
 /**
- * Ant task which unzips a zip resource from the installer jar.
+ * Ant task which unzips a zip resource from the installer jar.  The archive is
+ * streamed directly from the installer jar rather than being copied to a temp
+ * file first.  When a manifest is supplied, upgrades of an existing install
+ * only rewrite changed files and remove those no longer shipped.  Archives, or
+ * prefixes within them, can also be mapped to features so that the entries of
+ * deselected features are skipped.  Archives staged in the background by
+ * {@link PayloadStager} are moved into place rather than re-extracted, unless
+ * patternsets, mappers, overwrite="false" or a manifest are in use.
  *
  * @author Eric Van Dewoestine
  */
@@ -38,6 +72,18 @@ public class UnzipTask
   extends Expand
 {
   private String resource;
+  private File dest;
+  private File manifest;
+  private String feature;
+  private List features = new ArrayList();
+  private boolean filtered;
+
+  private FileUtils fileUtils;
+  private FileNameMapper mapper;
+  private ByteProgress progress;
+  private InstallManifest previous;
+  private InstallManifest current;
+  private int skipped;
 
   /**
    * Executes this task.
@@ -45,24 +91,277 @@ public class UnzipTask
   public void execute()
     throws BuildException
   {
-    File archive = null;
+    if (resource == null){
+      throw new BuildException("Attribute 'resource' is required.");
+    }
+    if (dest == null){
+      throw new BuildException("Dest attribute must be specified");
+    }
+    if (dest.exists() && !dest.isDirectory()){
+      throw new BuildException("Dest must be a directory.", getLocation());
+    }
+
+    if (feature != null && Feature.isDeselected(feature)){
+      log("Skipping " + resource + " (feature '" + feature + "' not selected)",
+          Project.MSG_VERBOSE);
+      return;
+    }
+
+    List excluded = new ArrayList();
+    for (Iterator ii = features.iterator(); ii.hasNext();){
+      FeaturePrefix prefix = (FeaturePrefix)ii.next();
+      if (prefix.isDeselected()){
+        log("Skipping " + prefix.getPrefix() + " (feature '" +
+            prefix.getProperty() + "' not selected)", Project.MSG_VERBOSE);
+        excluded.add(prefix.getPrefix());
+      }
+    }
+
+    log("Expanding: " + resource + " into " + dest, Project.MSG_INFO);
+
+    // use the files pre-extracted while the wizard was running if possible.
+    if (!filtered && manifest == null && PayloadStager.isStaged(resource)){
+      try{
+        if (PayloadStager.commit(resource, dest, excluded)){
+          log("Moved staged " + resource + " into " + dest, Project.MSG_VERBOSE);
+          return;
+        }
+      }catch(IOException ioe){
+        throw new BuildException(
+            "Error while moving staged " + resource + "\n" + ioe, ioe);
+      }
+    }
+
+    InputStream in = null;
     try{
-      archive = File.createTempFile(
-          FilenameUtils.getBaseName(resource),
-          "." + FilenameUtils.getExtension(resource));
-      Extractor.readArchive(resource, archive);
-      setSrc(archive);
-      super.execute();
+      in = Extractor.openResource(resource);
+      fileUtils = FileUtils.getFileUtils();
+      mapper = getMapper();
+      skipped = 0;
+
+      PayloadIndex index = PayloadIndex.load();
+      PayloadIndex.Archive archive =
+        index != null ? index.getArchive(resource) : null;
+
+      // report byte level progress to the install step if supported.
+      progress = null;
+      ByteProgress.Listener listener = InstallAction.getProgressListener();
+      if(listener != null){
+        progress = new ByteProgress(
+            archive != null ? archive.getSize() : -1, listener);
+      }
+
+      previous = null;
+      current = null;
+      if(manifest != null){
+        previous = InstallManifest.read(manifest);
+        current = new InstallManifest();
+      }
+
+      // when excluding features, use the payload index, if available, to
+      // skip over their entries without inflating them.
+      if(excluded.size() > 0 &&
+          archive != null && IndexedArchiveReader.isSupported(archive))
+      {
+        expandIndexed(in, archive, excluded);
+      }else{
+        expandStream(in, archive, excluded);
+      }
+      in.close();
+
+      if(progress != null){
+        progress.finish();
+      }
+
+      if(current != null){
+        List removed = previous.removeStale(dest, current);
+        for (Iterator ii = removed.iterator(); ii.hasNext();){
+          log("Removed " + ii.next(), Project.MSG_VERBOSE);
+        }
+        current.write(manifest);
+        log("Skipped " + skipped + " unchanged and removed " +
+            removed.size() + " obsolete file(s).", Project.MSG_VERBOSE);
+      }
+
+      log("expand complete", Project.MSG_VERBOSE);
     }catch(IOException ioe){
-      throw new BuildException(ioe);
+      throw new BuildException(
+          "Error while expanding " + resource + "\n" + ioe, ioe);
     }finally{
-      if (archive != null){
-        // delete temp archive.
-        archive.delete();
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Expands the archive using a ZipInputStream.
+   *
+   * @param in The archive stream.
+   * @param archive The archive's payload index or null if none.
+   * @param excluded List of entry prefixes to skip.
+   */
+  private void expandStream(
+      InputStream in, PayloadIndex.Archive archive, List excluded)
+    throws IOException
+  {
+    ZipInputStream zip = new ZipInputStream(in);
+    ZipEntry entry = null;
+    while((entry = zip.getNextEntry()) != null){
+      String name = entry.getName();
+      boolean expanded = false;
+      if(!isExcluded(name, excluded)){
+        // prefer the payload index since entries written with a data
+        // descriptor don't supply the size or crc until read.
+        long size = entry.getSize();
+        long crc = entry.getCrc();
+        PayloadIndex.Entry indexed =
+          archive != null ? archive.getEntry(name) : null;
+        if(indexed != null){
+          size = indexed.getSize();
+          crc = indexed.getCrc();
+        }
+
+        if(!skipUnchanged(name, size, crc, entry.isDirectory())){
+          expandEntry(name, entry.getTime(), entry.isDirectory(), zip);
+          expanded = true;
+        }
+      }
+      zip.closeEntry();
+
+      if(expanded){
+        track(name, entry.getSize(), entry.getCrc(), entry.isDirectory());
       }
     }
   }
 
+  /**
+   * Expands the archive using the entry offsets from its payload index,
+   * skipping over excluded entries without inflating them.
+   *
+   * @param in The archive stream.
+   * @param archive The archive's payload index.
+   * @param excluded List of entry prefixes to skip.
+   */
+  private void expandIndexed(
+      InputStream in, PayloadIndex.Archive archive, List excluded)
+    throws IOException
+  {
+    IndexedArchiveReader reader = new IndexedArchiveReader(in);
+    List entries = IndexedArchiveReader.getEntries(archive);
+    for (Iterator ii = entries.iterator(); ii.hasNext();){
+      PayloadIndex.Entry entry = (PayloadIndex.Entry)ii.next();
+      String name = entry.getPath();
+      if(isExcluded(name, excluded) ||
+          skipUnchanged(name, entry.getSize(), entry.getCrc(), entry.isDirectory()))
+      {
+        continue;
+      }
+
+      InputStream entryIn = reader.open(entry);
+      expandEntry(name, reader.getTime(), entry.isDirectory(), entryIn);
+      track(name, entry.getSize(), entry.getCrc(), entry.isDirectory());
+    }
+  }
+
+  /**
+   * Writes a single entry via {@link Expand#extractFile}.
+   *
+   * @param name The entry name.
+   * @param time The entry's last modified time.
+   * @param directory true if the entry is a directory.
+   * @param in The entry's uncompressed contents.
+   */
+  private void expandEntry(
+      String name, long time, boolean directory, InputStream in)
+    throws IOException
+  {
+    if(progress != null){
+      in = new ProgressInputStream(in, progress);
+    }
+    extractFile(fileUtils, null, dest, in,
+        name, new Date(time), directory, mapper);
+  }
+
+  /**
+   * When upgrading, determines if the supplied entry is unchanged from the
+   * previous install and can be skipped.
+   *
+   * @param name The entry name.
+   * @param size The entry's uncompressed size.
+   * @param crc The entry's crc.
+   * @param directory true if the entry is a directory.
+   * @return true if the entry should be skipped, false otherwise.
+   */
+  private boolean skipUnchanged(
+      String name, long size, long crc, boolean directory)
+    throws IOException
+  {
+    if(current == null || directory){
+      return false;
+    }
+
+    String path = mapName(name);
+    if(previous.isCurrent(dest, path, size, crc)){
+      log("Skipping unchanged " + name, Project.MSG_DEBUG);
+      current.add(path, size, crc);
+      skipped++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * When upgrading, records the supplied entry in the new install manifest.
+   *
+   * @param name The entry name.
+   * @param size The entry's uncompressed size.
+   * @param crc The entry's crc.
+   * @param directory true if the entry is a directory.
+   */
+  private void track(String name, long size, long crc, boolean directory)
+  {
+    if(current == null || directory){
+      return;
+    }
+
+    // only track files actually written (ie. not excluded by a pattern).
+    String path = mapName(name);
+    if(new File(dest, path).isFile()){
+      current.add(path, size, crc);
+    }
+  }
+
+  /**
+   * Gets the path, relative to the destination, that the supplied entry is
+   * written to, which is also the path recorded in the install manifest.
+   *
+   * @param name The entry name.
+   * @return The mapped path.
+   */
+  private String mapName(String name)
+  {
+    // same mapping as Expand.extractFile.
+    String[] mapped = mapper.mapFileName(name);
+    return mapped != null && mapped.length > 0 ? mapped[0] : name;
+  }
+
+  /**
+   * Determines if the supplied entry falls under one of the excluded
+   * prefixes.
+   *
+   * @param name The entry name.
+   * @param excluded List of excluded prefixes.
+   * @return true if excluded, false otherwise.
+   */
+  private boolean isExcluded(String name, List excluded)
+  {
+    for (int ii = 0; ii < excluded.size(); ii++){
+      if(name.startsWith((String)excluded.get(ii))){
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Sets the resource to unzip.
    *
@@ -72,4 +371,99 @@ public class UnzipTask
   {
     this.resource = resource;
   }
+
+  /**
+   * Sets the install manifest file, enabling incremental upgrade mode where
+   * only files whose size or crc has changed since the previous install are
+   * rewritten and files no longer contained in the archive are removed.
+   * <p/>
+   * Paths are recorded as written, after applying any mapper.  For files
+   * listed in the manifest only the size on disk is checked, the recorded
+   * crc is trusted, so a file modified in place without changing its size
+   * will not be restored.
+   *
+   * @param manifest The manifest file (need not exist yet).
+   */
+  public void setManifest(File manifest)
+  {
+    this.manifest = manifest;
+  }
+
+  /**
+   * Sets the install context key (ex. featureList.myfeature) of the feature
+   * this archive belongs to.  When that feature has been deselected the
+   * archive is not read at all.
+   *
+   * @param feature The feature key.
+   */
+  public void setFeature(String feature)
+  {
+    this.feature = feature;
+  }
+
+  /**
+   * Adds a mapping of an archive path prefix to the feature its entries
+   * belong to.
+   *
+   * @param prefix The feature prefix mapping.
+   */
+  public void addConfiguredFeature(FeaturePrefix prefix)
+  {
+    if (prefix.getProperty() == null || prefix.getPrefix() == null){
+      throw new BuildException(
+          "Attributes 'property' and 'prefix' are required for <feature>.");
+    }
+    features.add(prefix);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see Expand#setOverwrite(boolean)
+   */
+  public void setOverwrite(boolean overwrite)
+  {
+    super.setOverwrite(overwrite);
+    filtered = filtered || !overwrite;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see Expand#addPatternset(PatternSet)
+   */
+  public void addPatternset(PatternSet set)
+  {
+    super.addPatternset(set);
+    filtered = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see Expand#createMapper()
+   */
+  public Mapper createMapper()
+    throws BuildException
+  {
+    filtered = true;
+    return super.createMapper();
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see Expand#add(FileNameMapper)
+   */
+  public void add(FileNameMapper fileNameMapper)
+  {
+    super.add(fileNameMapper);
+    filtered = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see Expand#setDest(File)
+   */
+  public void setDest(File dest)
+  {
+    super.setDest(dest);
+    this.dest = dest;
+  }
 }
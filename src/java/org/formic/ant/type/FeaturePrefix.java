@@ -0,0 +1,93 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.ant.type;
+
+import org.formic.wizard.step.shared.Feature;
+
+/**
+ * Maps a directory prefix within an archive to the feature responsible for
+ * the entries under it, allowing those entries to be skipped when the feature has
+ * been deselected.
+ * <p/>
+ * Ex.<br/>
+ * &lt;feature property="featureList.docs" prefix="docs/"/&gt;
+ *
+ * @author Eric Van Dewoestine
+ */
+public class FeaturePrefix
+{
+  private String property;
+  private String prefix;
+
+  /**
+   * Gets the install context key holding the feature's selection state.
+   *
+   * @return The property.
+   */
+  public String getProperty()
+  {
+    return this.property;
+  }
+
+  /**
+   * Sets the install context key holding the feature's selection state (ex.
+   * featureList.docs).
+   *
+   * @param property The property.
+   */
+  public void setProperty(String property)
+  {
+    this.property = property;
+  }
+
+  /**
+   * Gets the archive path prefix.
+   *
+   * @return The prefix.
+   */
+  public String getPrefix()
+  {
+    return this.prefix;
+  }
+
+  /**
+   * Sets the archive path prefix.  The prefix always names a directory, so a
+   * trailing '/' is added if missing (ex. docs matches docs/index.html but not
+   * docs2/index.html).
+   *
+   * @param prefix The prefix.
+   */
+  public void setPrefix(String prefix)
+  {
+    if(prefix != null && prefix.length() > 0 && !prefix.endsWith("/")){
+      prefix += '/';
+    }
+    this.prefix = prefix;
+  }
+
+  /**
+   * Determines if the feature has been deselected.
+   *
+   * @return true if deselected, false otherwise.
+   */
+  public boolean isDeselected()
+  {
+    return Feature.isDeselected(property);
+  }
+}
@@ -19,6 +19,12 @@
 package org.formic.ant.util;
 
 import java.io.File;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -28,13 +34,15 @@ import org.apache.tools.ant.Project;
 import org.apache.tools.ant.ProjectHelper;
 import org.apache.tools.ant.ProjectHelperRepository;
 
+import org.apache.tools.ant.helper.ProjectHelper2;
+
 import org.apache.tools.ant.taskdefs.Chmod;
 import org.apache.tools.ant.taskdefs.Copy;
 import org.apache.tools.ant.taskdefs.Mkdir;
 import org.apache.tools.ant.taskdefs.Property;
-import org.apache.tools.ant.taskdefs.Replace;
 
 import org.formic.ant.ClasspathResource;
+import org.formic.ant.ReplaceTask;
 
 /**
  * Utility methods for executing some common ant tasks.
@@ -47,6 +55,9 @@ public class AntUtils
   private static final String FORMIC_HOME_ENV = "env.FORMIC_HOME";
   private static String formicHome;
 
+  private static final Map TEMPLATES =
+    Collections.synchronizedMap(new HashMap());
+
   /**
    * Gets the location of the formic distribution based on the current
    * settings.
@@ -184,15 +195,32 @@ public class AntUtils
   public static void replace(
       Project project, File file, String token, String value)
   {
-    Replace replace = new Replace();
-    replace.setProject(project);
-    replace.setFile(file);
-
-    Replace.Replacefilter filter = replace.createReplacefilter();
-    filter.setToken(token);
-    filter.setValue(value);
+    replace(project, new File[]{file}, Collections.singletonMap(token, value));
+  }
 
-    replace.execute();
+  /**
+   * Replaces all the supplied tokens in the given files, scanning each file
+   * once and processing the files concurrently.  Files containing none of
+   * the tokens are left untouched.
+   *
+   * @param project The current project.
+   * @param files The files.
+   * @param tokens Map of token to the value to replace it with.
+   */
+  public static void replace(Project project, File[] files, Map tokens)
+  {
+    for (int ii = 0; ii < files.length; ii++){
+      if (!files[ii].exists()){
+        throw new BuildException("Could not find file: " + files[ii]);
+      }
+    }
+    try{
+      int modified = ReplaceTask.replace(Arrays.asList(files), tokens, null, 0);
+      project.log("Replaced tokens in " + modified + " of " + files.length +
+          " files.", Project.MSG_VERBOSE);
+    }catch(IOException ioe){
+      throw new BuildException(ioe);
+    }
   }
 
   /**
@@ -223,6 +251,10 @@ public class AntUtils
   /**
    * Configure the supplied project using the build file at the supplied
    * resource name location.
+   * <p/>
+   * The build file is only parsed once per resource url; subsequent
+   * projects (antcall, ant) are configured from a cached
+   * {@link ProjectTemplate}.
    *
    * @param resourceName The resource name.
    * @param project The project to configure.
@@ -240,6 +272,22 @@ public class AntUtils
     ProjectHelper helper = ProjectHelperRepository.getInstance()
       .getProjectHelperForBuildFile(resource);
     project.addReference(ProjectHelper.PROJECTHELPER_REFERENCE, helper);
-    helper.parse(project, resource.getUrl());
+
+    ProjectTemplate template = null;
+    if(helper instanceof ProjectHelper2){
+      String key = resource.getUrl().toString();
+      synchronized(TEMPLATES){
+        if(!TEMPLATES.containsKey(key)){
+          TEMPLATES.put(key, ProjectTemplate.parse(resource.getUrl()));
+        }
+        template = (ProjectTemplate)TEMPLATES.get(key);
+      }
+    }
+
+    if(template != null){
+      template.configure(project);
+    }else{
+      helper.parse(project, resource.getUrl());
+    }
   }
 }
@@ -0,0 +1,243 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.ant.util;
+
+import java.io.File;
+
+import java.net.URL;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.ExtensionPoint;
+import org.apache.tools.ant.MagicNames;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.ProjectHelper;
+import org.apache.tools.ant.Target;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.UnknownElement;
+
+import org.apache.tools.ant.helper.AntXMLContext;
+import org.apache.tools.ant.helper.ProjectHelper2;
+
+/**
+ * A parsed build file that can configure any number of projects without
+ * re-reading the xml.
+ * <p/>
+ * The build file is parsed once into a scratch project without running
+ * any of its top level tasks.  Each project configured from the template
+ * then receives fresh copies of the targets and their task definitions,
+ * after which the copied top level tasks are executed just as a normal
+ * parse would.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProjectTemplate
+{
+  private String url;
+  private String name;
+  private String defaultTarget;
+  private File baseDir;
+  private Target implicitTarget;
+  private List targets;
+
+  private ProjectTemplate (String url)
+  {
+    this.url = url;
+  }
+
+  /**
+   * Parses the build file at the supplied url into a new template.
+   *
+   * @param url The build file url.
+   * @return The template, or null if the build file cannot be templated
+   * (it imports other build files or has elements ant creates eagerly).
+   */
+  public static ProjectTemplate parse(URL url)
+  {
+    Project scratch = new Project();
+    AntXMLContext context = new AntXMLContext(scratch);
+    context.setCurrentTargets(new HashMap());
+    scratch.addReference(ProjectHelper2.REFID_TARGETS, context.getTargets());
+
+    try{
+      new Helper().parse(scratch, url, context);
+    }catch(RuntimeException re){
+      // let the regular parse report the failure.
+      return null;
+    }
+
+    ProjectTemplate template = new ProjectTemplate(url.toString());
+    template.name = scratch.getName();
+    template.defaultTarget = scratch.getDefaultTarget();
+    template.baseDir = scratch.getBaseDir();
+    template.implicitTarget = context.getImplicitTarget();
+    template.targets = new ArrayList();
+
+    Task[] tasks = template.implicitTarget.getTasks();
+    for (int ii = 0; ii < tasks.length; ii++){
+      if (!(tasks[ii] instanceof UnknownElement) ||
+          isImport((UnknownElement)tasks[ii]))
+      {
+        return null;
+      }
+    }
+
+    for (Iterator ii = context.getTargets().iterator(); ii.hasNext();){
+      Target target = (Target)ii.next();
+      if (target == template.implicitTarget){
+        continue;
+      }
+      Task[] children = target.getTasks();
+      for (int jj = 0; jj < children.length; jj++){
+        if (!(children[jj] instanceof UnknownElement)){
+          return null;
+        }
+      }
+      template.targets.add(target);
+    }
+    return template;
+  }
+
+  /**
+   * Configures the supplied project from this template, mirroring what
+   * {@link ProjectHelper2} does when parsing the build file into it.
+   *
+   * @param project The project to configure.
+   */
+  public void configure(Project project)
+    throws BuildException
+  {
+    if (name != null){
+      project.setName(name);
+      project.addReference(name, project);
+      if (project.getProperty(MagicNames.ANT_FILE + '.' + name) == null){
+        project.setUserProperty(MagicNames.ANT_FILE + '.' + name, url);
+        project.setUserProperty(
+            MagicNames.ANT_FILE_TYPE + '.' + name, MagicNames.ANT_FILE_TYPE_URL);
+      }
+    }
+    if (defaultTarget != null){
+      project.setDefault(defaultTarget);
+    }
+
+    String basedir = project.getProperty(MagicNames.PROJECT_BASEDIR);
+    if (basedir != null){
+      project.setBasedir(basedir);
+    }else if (baseDir != null){
+      project.setBaseDir(baseDir);
+    }
+
+    Vector copies = new Vector();
+    Target implicit = copy(implicitTarget, project);
+    project.addOrReplaceTarget("", implicit);
+    copies.add(implicit);
+    for (Iterator ii = targets.iterator(); ii.hasNext();){
+      Target target = copy((Target)ii.next(), project);
+      project.addOrReplaceTarget(target.getName(), target);
+      copies.add(target);
+    }
+    project.addReference(ProjectHelper2.REFID_TARGETS, copies);
+
+    implicit.execute();
+  }
+
+  /**
+   * Copies the supplied target and its tasks into the given project.
+   *
+   * @param target The target to copy.
+   * @param project The project the copy belongs to.
+   * @return The copy.
+   */
+  private Target copy(Target target, Project project)
+  {
+    Target copy = target instanceof ExtensionPoint ?
+      new ExtensionPoint() : new Target();
+    copy.setName(target.getName());
+    copy.setProject(project);
+    copy.setLocation(target.getLocation());
+    copy.setDescription(target.getDescription());
+    copy.setIf(target.getIf());
+    copy.setUnless(target.getUnless());
+    for (Enumeration ii = target.getDependencies(); ii.hasMoreElements();){
+      copy.addDependency((String)ii.nextElement());
+    }
+
+    Task[] tasks = target.getTasks();
+    for (int ii = 0; ii < tasks.length; ii++){
+      UnknownElement task = ((UnknownElement)tasks[ii]).copy(project);
+      task.setOwningTarget(copy);
+      registerIds(task, project);
+      copy.addTask(task);
+    }
+    return copy;
+  }
+
+  /**
+   * Registers the ids of the supplied element and its children the same
+   * way the parser does, so forward references still resolve.
+   *
+   * @param element The element.
+   * @param project The project.
+   */
+  private void registerIds(UnknownElement element, Project project)
+  {
+    Object id = element.getWrapper().getAttributeMap().get("id");
+    if (id != null){
+      project.addIdReference((String)id, element);
+    }
+    List children = element.getChildren();
+    if (children != null){
+      for (Iterator ii = children.iterator(); ii.hasNext();){
+        registerIds((UnknownElement)ii.next(), project);
+      }
+    }
+  }
+
+  /**
+   * Determines if the supplied top level element is an import or include,
+   * which adds targets to the project as it runs.
+   *
+   * @param element The element.
+   * @return true if the element imports another build file.
+   */
+  private static boolean isImport(UnknownElement element)
+  {
+    String tag = element.getTag();
+    return "import".equals(tag) || "include".equals(tag);
+  }
+
+  /**
+   * Exposes the parse-only entry point of {@link ProjectHelper2}.
+   */
+  private static class Helper
+    extends ProjectHelper2
+  {
+    public void parse(Project project, URL url, AntXMLContext context)
+    {
+      project.addReference(ProjectHelper.PROJECTHELPER_REFERENCE, this);
+      parse(project, url, new RootHandler(context, getMainHandler()));
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.ant.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.PropertyHelper;
+
+/**
+ * Sorted index of the property names defined in an ant project, used to
+ * answer prefix queries without copying the project's property table.
+ * <p/>
+ * The index is seeded from the project's properties when created and then
+ * kept current by registering itself as a property setter delegate, which
+ * ant consults whenever a property is set via {@link Project#setProperty} or
+ * {@link Project#setNewProperty} (property tasks, etc).  User and inherited
+ * properties are set without consulting the delegates, so those, typically
+ * few, properties are checked directly on each query.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class PropertyIndex
+  implements PropertyHelper.PropertySetter
+{
+  private Project project;
+  private SortedSet names = new TreeSet();
+  private volatile int modifications;
+
+  private PropertyIndex (Project project)
+  {
+    this.project = project;
+    names.addAll(project.getProperties().keySet());
+  }
+
+  /**
+   * Gets the property index for the supplied project, creating and
+   * registering it on first use.
+   *
+   * @param project The project.
+   * @return The index.
+   */
+  public static PropertyIndex get(Project project)
+  {
+    PropertyHelper helper = PropertyHelper.getPropertyHelper(project);
+    synchronized(helper){
+      PropertyIndex index = (PropertyIndex)
+        project.getReference(PropertyIndex.class.getName());
+      if(index == null){
+        index = new PropertyIndex(project);
+        helper.add(index);
+        project.addReference(PropertyIndex.class.getName(), index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Gets the names of all defined properties starting with the supplied
+   * prefix, in sorted order.
+   *
+   * @param prefix The prefix.
+   * @return List of property names.
+   */
+  public List getNames(String prefix)
+  {
+    TreeSet found = new TreeSet();
+    synchronized(names){
+      found.addAll(subSet(names, prefix));
+    }
+    for (Iterator ii = project.getUserProperties().keySet().iterator();
+        ii.hasNext();)
+    {
+      String name = (String)ii.next();
+      if(name.startsWith(prefix)){
+        found.add(name);
+      }
+    }
+    ArrayList results = new ArrayList(found);
+
+    // drop any names which have since gone out of scope (<local>, etc).
+    PropertyHelper helper = PropertyHelper.getPropertyHelper(project);
+    for (Iterator ii = results.iterator(); ii.hasNext();){
+      if(helper.getProperty((String)ii.next()) == null){
+        ii.remove();
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Gets the number of times a property has been set since this index was
+   * created, plus the number of user properties, which callers can compare
+   * to detect property changes.
+   *
+   * @return The modification count.
+   */
+  public int getModificationCount()
+  {
+    return modifications + project.getUserProperties().size();
+  }
+
+  /**
+   * Gets the view of the supplied sorted set of strings which start with the
+   * supplied prefix.
+   *
+   * @param set The sorted set.
+   * @param prefix The prefix.
+   * @return The subset view.
+   */
+  public static SortedSet subSet(SortedSet set, String prefix)
+  {
+    return set.subSet(prefix, prefix + Character.MAX_VALUE);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see PropertyHelper.PropertySetter#setNew(String,Object,PropertyHelper)
+   */
+  public boolean setNew(String property, Object value, PropertyHelper helper)
+  {
+    add(property);
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see PropertyHelper.PropertySetter#set(String,Object,PropertyHelper)
+   */
+  public boolean set(String property, Object value, PropertyHelper helper)
+  {
+    add(property);
+    return false;
+  }
+
+  private void add(String property)
+  {
+    if(property != null){
+      synchronized(names){
+        names.add(property);
+        modifications++;
+      }
+    }
+  }
+}
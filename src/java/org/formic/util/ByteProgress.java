@@ -0,0 +1,326 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+/**
+ * Tracks the number of bytes processed by a long running operation (archive
+ * extraction, file copies, etc.), maintaining a rolling throughput figure and
+ * an estimated time remaining.
+ * <p/>
+ * A progress constructed with the {@link #ITEMS} unit counts discrete items
+ * (commands, files, etc.) instead, where each call to {@link #add(long)}
+ * records that number of items.
+ * <p/>
+ * {@link #add(long)} is cheap enough to call from within a copy loop; the
+ * registered {@link Listener} is notified at most once per update interval.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ByteProgress
+{
+  /**
+   * Default minimum number of milliseconds between listener notifications.
+   */
+  public static final long DEFAULT_INTERVAL = 250;
+
+  /**
+   * Unit of a progress counting bytes.
+   */
+  public static final int BYTES = 0;
+
+  /**
+   * Unit of a progress counting discrete items.
+   */
+  public static final int ITEMS = 1;
+
+  // weight given to the most recent throughput sample.
+  private static final double SMOOTHING = 0.3;
+
+  private static final String[] UNITS = {"B", "KB", "MB", "GB", "TB"};
+
+  private Listener listener;
+  private int unit;
+  private long interval;
+  private long total;
+  private long bytes;
+  private long startTime;
+  private long lastUpdate;
+  private long sampleBytes;
+  private double throughput;
+  private boolean finished;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param total The total number of bytes expected, or -1 if unknown.
+   * @param listener The listener to notify of progress (may be null).
+   */
+  public ByteProgress(long total, Listener listener)
+  {
+    this(total, DEFAULT_INTERVAL, listener);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param total The total number of bytes expected, or -1 if unknown.
+   * @param interval The minimum number of milliseconds between listener
+   * notifications.
+   * @param listener The listener to notify of progress (may be null).
+   */
+  public ByteProgress(long total, long interval, Listener listener)
+  {
+    this(BYTES, total, interval, listener);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param unit The unit counted ({@link #BYTES} or {@link #ITEMS}).
+   * @param total The total number of units expected, or -1 if unknown.
+   * @param interval The minimum number of milliseconds between listener
+   * notifications.
+   * @param listener The listener to notify of progress (may be null).
+   */
+  public ByteProgress(int unit, long total, long interval, Listener listener)
+  {
+    this.unit = unit;
+    this.total = total;
+    this.interval = interval;
+    this.listener = listener;
+    this.startTime = System.currentTimeMillis();
+    this.lastUpdate = startTime;
+  }
+
+  /**
+   * Records that the supplied number of bytes have been processed, notifying
+   * the listener if the update interval has elapsed.
+   *
+   * @param count The number of bytes.
+   */
+  public void add(long count)
+  {
+    boolean notify = false;
+    synchronized(this){
+      bytes += count;
+      long now = System.currentTimeMillis();
+      long elapsed = now - lastUpdate;
+      if(elapsed >= interval){
+        sample(now, elapsed);
+        notify = true;
+      }
+    }
+
+    if(notify && listener != null){
+      listener.progressUpdated(this);
+    }
+  }
+
+  /**
+   * Marks the operation as finished and notifies the listener of the final
+   * state.
+   */
+  public void finish()
+  {
+    synchronized(this){
+      long now = System.currentTimeMillis();
+      sample(now, now - lastUpdate);
+      if(total < 0){
+        total = bytes;
+      }
+      finished = true;
+    }
+
+    if(listener != null){
+      listener.progressUpdated(this);
+    }
+  }
+
+  /**
+   * Takes a new throughput sample.
+   *
+   * @param now The current time.
+   * @param elapsed The time elapsed since the last sample.
+   */
+  private void sample(long now, long elapsed)
+  {
+    if(elapsed > 0){
+      double current = (bytes - sampleBytes) * 1000d / elapsed;
+      throughput = throughput == 0 ?
+        current : (SMOOTHING * current) + ((1 - SMOOTHING) * throughput);
+    }
+    sampleBytes = bytes;
+    lastUpdate = now;
+  }
+
+  /**
+   * Gets the number of bytes processed so far.
+   *
+   * @return The number of bytes.
+   */
+  public synchronized long getBytes()
+  {
+    return bytes;
+  }
+
+  /**
+   * Gets the total number of bytes expected.
+   *
+   * @return The total or -1 if unknown.
+   */
+  public synchronized long getTotal()
+  {
+    return total;
+  }
+
+  /**
+   * Gets the percentage complete.
+   *
+   * @return The percent (0 - 100) or -1 if the total is unknown.
+   */
+  public synchronized int getPercent()
+  {
+    if(total < 0){
+      return -1;
+    }
+    if(total == 0 || bytes >= total){
+      return 100;
+    }
+    return (int)((bytes * 100) / total);
+  }
+
+  /**
+   * Gets the rolling throughput.
+   *
+   * @return The throughput in bytes per second.
+   */
+  public synchronized long getThroughput()
+  {
+    return (long)throughput;
+  }
+
+  /**
+   * Gets the estimated time remaining.
+   *
+   * @return The number of milliseconds remaining or -1 if it cannot be
+   * estimated.
+   */
+  public synchronized long getRemainingTime()
+  {
+    if(finished){
+      return 0;
+    }
+    if(total < 0 || throughput <= 0){
+      return -1;
+    }
+    return (long)(Math.max(total - bytes, 0) * 1000d / throughput);
+  }
+
+  /**
+   * Gets the number of milliseconds elapsed since this progress started.
+   *
+   * @return The elapsed time in milliseconds.
+   */
+  public long getElapsedTime()
+  {
+    return System.currentTimeMillis() - startTime;
+  }
+
+  /**
+   * Determines if the operation has finished.
+   *
+   * @return true if finished, false otherwise.
+   */
+  public synchronized boolean isFinished()
+  {
+    return finished;
+  }
+
+  /**
+   * Gets the unit counted by this progress.
+   *
+   * @return {@link #BYTES} or {@link #ITEMS}.
+   */
+  public int getUnit()
+  {
+    return unit;
+  }
+
+  /**
+   * Formats the supplied number of bytes for display (ex. 1.5 MB).
+   *
+   * @param bytes The number of bytes.
+   * @return The formatted value.
+   */
+  public static String formatBytes(long bytes)
+  {
+    double value = bytes;
+    int unit = 0;
+    while(value >= 1024 && unit < UNITS.length - 1){
+      value /= 1024;
+      unit++;
+    }
+    if(unit == 0){
+      return bytes + " " + UNITS[unit];
+    }
+    return (Math.round(value * 10) / 10d) + " " + UNITS[unit];
+  }
+
+  /**
+   * Formats the supplied duration for display (ex. 1:05:09 or 5:09).
+   *
+   * @param millis The duration in milliseconds.
+   * @return The formatted value.
+   */
+  public static String formatTime(long millis)
+  {
+    long seconds = millis / 1000;
+    long hours = seconds / 3600;
+    long minutes = (seconds % 3600) / 60;
+    seconds = seconds % 60;
+
+    StringBuffer buffer = new StringBuffer();
+    if(hours > 0){
+      buffer.append(hours).append(':');
+      if(minutes < 10){
+        buffer.append('0');
+      }
+    }
+    buffer.append(minutes).append(':');
+    if(seconds < 10){
+      buffer.append('0');
+    }
+    buffer.append(seconds);
+    return buffer.toString();
+  }
+
+  /**
+   * Listener which is notified, at a limited rate, as bytes are processed.
+   */
+  public static interface Listener
+  {
+    /**
+     * Invoked when the progress has been updated.  May be invoked from any
+     * thread.
+     *
+     * @param progress The progress.
+     */
+    public void progressUpdated(ByteProgress progress);
+  }
+}
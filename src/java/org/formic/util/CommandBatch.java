@@ -0,0 +1,323 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs a set of independent external commands concurrently.
+ * <p/>
+ * At most the configured number of commands run at once, each subject to its
+ * own timeout.  A command fails if it exits with a non zero return code,
+ * exceeds its timeout, or cannot be started.  In fail fast mode no further
+ * commands are started once one fails (those already running are allowed to
+ * finish); otherwise every command is run and all failures are collected in
+ * the {@link Result}.
+ * <p/>
+ * If the thread running the batch is interrupted, no further commands are
+ * started and those running are destroyed before the interrupt is rethrown.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class CommandBatch
+{
+  private static final Logger logger = Logger.getLogger(CommandBatch.class);
+
+  private List commands = new ArrayList();
+  private List timeouts = new ArrayList();
+  private int threads;
+  private boolean failFast;
+  private Listener listener;
+
+  /**
+   * Constructs a new batch.
+   *
+   * @param threads The maximum number of commands to run at once, or a value
+   * less than 1 to use one per available processor.
+   */
+  public CommandBatch(int threads)
+  {
+    this.threads = threads;
+  }
+
+  /**
+   * Adds a command to this batch.
+   *
+   * @param cmd The command to execute.
+   * @param timeout Timeout in milliseconds, after which the process is
+   * destroyed, or a value less than 1 for none.
+   */
+  public void add(String[] cmd, long timeout)
+  {
+    commands.add(cmd);
+    timeouts.add(new Long(timeout));
+  }
+
+  /**
+   * Gets the number of commands in this batch.
+   *
+   * @return The number of commands.
+   */
+  public int size()
+  {
+    return commands.size();
+  }
+
+  /**
+   * Sets whether to stop starting commands once any command fails.
+   *
+   * @param failFast true to fail fast, false to run all commands.
+   */
+  public void setFailFast(boolean failFast)
+  {
+    this.failFast = failFast;
+  }
+
+  /**
+   * Sets the listener to notify as commands start and finish.
+   *
+   * @param listener The listener.
+   */
+  public void setListener(Listener listener)
+  {
+    this.listener = listener;
+  }
+
+  /**
+   * Runs the commands in this batch, blocking until they have completed.
+   *
+   * @return The aggregate result.
+   */
+  public Result execute()
+    throws InterruptedException
+  {
+    Result result = new Result(commands.size());
+    int count = Math.min(
+        threads > 0 ? threads : WorkerPool.defaultSize(), commands.size());
+    if(count <= 1){
+      result.run();
+      if(Thread.interrupted()){
+        throw new InterruptedException();
+      }
+    }else{
+      WorkerPool pool = new WorkerPool("commands", count);
+      for(int ii = 0; ii < count; ii++){
+        pool.execute(result);
+      }
+      pool.shutdown();
+      try{
+        pool.join();
+      }catch(InterruptedException ie){
+        // interrupt the workers so that their running commands are destroyed
+        // rather than left behind, and wait for them to do so.
+        result.cancel();
+        boolean drained = false;
+        while(!drained){
+          try{
+            pool.join();
+            drained = true;
+          }catch(InterruptedException ignore){
+          }
+        }
+        throw ie;
+      }
+    }
+    result.duration = System.currentTimeMillis() - result.start;
+    return result;
+  }
+
+  /**
+   * Determines if the supplied executor represents a failed command.
+   *
+   * @param executor The executor.
+   * @return true if failed, false otherwise.
+   */
+  public static boolean isFailure(CommandExecutor executor)
+  {
+    return executor.getReturnCode() != 0 || executor.isTimedOut();
+  }
+
+  /**
+   * Aggregate result of running a batch of commands, which also serves as the
+   * work shared by the threads running them.
+   */
+  public class Result
+    implements Runnable
+  {
+    private CommandExecutor[] executors;
+    private List failures = new ArrayList();
+    private Set running = new HashSet();
+    private boolean cancelled;
+    private int next;
+    private int completed;
+    private long start = System.currentTimeMillis();
+    private long duration;
+
+    private Result(int size)
+    {
+      executors = new CommandExecutor[size];
+    }
+
+    /**
+     * Gets the executor for each command, in the order the commands were
+     * added.  Commands never started (fail fast) have a null entry.
+     *
+     * @return Array of CommandExecutor.
+     */
+    public synchronized CommandExecutor[] getExecutors()
+    {
+      return (CommandExecutor[])executors.clone();
+    }
+
+    /**
+     * Gets the executors of the commands which failed, in the order they
+     * finished.
+     *
+     * @return Array of CommandExecutor.
+     */
+    public synchronized CommandExecutor[] getFailures()
+    {
+      return (CommandExecutor[])
+        failures.toArray(new CommandExecutor[failures.size()]);
+    }
+
+    /**
+     * Gets the number of commands which ran to completion (successfully or
+     * not).
+     *
+     * @return The number of completed commands.
+     */
+    public synchronized int getCompleted()
+    {
+      return completed;
+    }
+
+    /**
+     * Determines if every command in the batch ran successfully.
+     *
+     * @return true if successful, false otherwise.
+     */
+    public synchronized boolean isSuccessful()
+    {
+      return failures.size() == 0 && completed == executors.length;
+    }
+
+    /**
+     * Gets the number of milliseconds the batch took to run.
+     *
+     * @return The duration.
+     */
+    public long getDuration()
+    {
+      return duration;
+    }
+
+    public void run()
+    {
+      int index;
+      while((index = claim()) != -1){
+        String[] cmd = (String[])commands.get(index);
+        long timeout = ((Long)timeouts.get(index)).longValue();
+        if(listener != null){
+          listener.commandStarted(index, cmd);
+        }
+
+        CommandExecutor executor = null;
+        try{
+          executor = CommandExecutor.execute(cmd, timeout);
+        }catch(Exception e){
+          // execute handles its own failures, this shouldn't happen.
+          logger.error(
+              "Error executing command: " + StringUtils.join(cmd, ' '), e);
+        }
+        finished(index, executor);
+
+        if(listener != null && executor != null){
+          listener.commandFinished(index, executor);
+        }
+      }
+    }
+
+    private synchronized int claim()
+    {
+      if(cancelled || Thread.currentThread().isInterrupted() ||
+          (failFast && failures.size() > 0) || next >= executors.length)
+      {
+        return -1;
+      }
+      running.add(Thread.currentThread());
+      return next++;
+    }
+
+    private synchronized void finished(int index, CommandExecutor executor)
+    {
+      running.remove(Thread.currentThread());
+      executors[index] = executor;
+      if(executor != null){
+        completed++;
+        if(isFailure(executor)){
+          failures.add(executor);
+        }
+      }
+    }
+
+    /**
+     * Stops claiming commands and interrupts the threads running them, which
+     * destroys their processes.
+     */
+    private synchronized void cancel()
+    {
+      cancelled = true;
+      for (Iterator ii = running.iterator(); ii.hasNext();){
+        ((Thread)ii.next()).interrupt();
+      }
+    }
+  }
+
+  /**
+   * Listener notified as the commands of a batch are run.  Methods are
+   * invoked from the threads running the commands.
+   */
+  public static interface Listener
+  {
+    /**
+     * Invoked before a command is started.
+     *
+     * @param index The index of the command in the batch.
+     * @param cmd The command.
+     */
+    public void commandStarted(int index, String[] cmd);
+
+    /**
+     * Invoked when a command has finished.
+     *
+     * @param index The index of the command in the batch.
+     * @param executor The executor holding the command's final state.
+     */
+    public void commandFinished(int index, CommandExecutor executor);
+  }
+}
@@ -20,9 +20,17 @@ package org.formic.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.apache.commons.io.IOUtils;
 
@@ -31,21 +39,54 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 /**
- * Thread to run the external command.
+ * Runs an external command.
+ * <p/>
+ * The command runs on the calling thread while its output and error streams
+ * are drained by a shared pool of threads, so running many commands does not
+ * create new threads for each one.  Only the last {@link #MAX_CAPTURE}
+ * characters of each stream are kept for {@link #getResult()} and
+ * {@link #getErrorMessage()}; a {@link OutputListener} may be supplied to
+ * receive the complete output line by line as it is produced.
+ * <p/>
+ * Subclasses which still override {@link #createOutThread(OutputStream)} or
+ * {@link #createErrThread(OutputStream)} have their threads used in place of
+ * the shared pool for that stream, with the whole stream retained and no
+ * lines passed to the listener.
+ * <p/>
+ * Commands which exceed their timeout are destroyed, as are commands whose
+ * thread is interrupted while waiting on them and any commands still running
+ * when the jvm shuts down.
+ *
+ * @author Eric Van Dewoestine
  */
 public class CommandExecutor
-  extends Thread
 {
   private static final Logger logger = Logger.getLogger(CommandExecutor.class);
 
+  /**
+   * The maximum number of characters of output and error output retained.
+   */
+  public static final int MAX_CAPTURE = 64 * 1024;
+
+  private static final long DRAIN_TIMEOUT = 1000;
+
+  private static WorkerPool pool =
+    new WorkerPool("command", Integer.MAX_VALUE);
+  private static Timer timer;
+  private static Set running = new HashSet();
+  private static Thread reaper;
+
   protected int returnCode = -1;
   protected String result;
   protected String error;
   protected String[] cmd;
   protected Process process;
 
-  private boolean shutdown;
-  private ShutdownHook shutdownHook;
+  private OutputListener listener;
+  private long duration;
+  private volatile boolean shutdown;
+  private volatile boolean timedOut;
+  private volatile boolean interrupted;
 
   /**
    * Construct a new instance.
@@ -84,46 +125,74 @@ public class CommandExecutor
   public static CommandExecutor execute(String[] cmd, long timeout)
     throws Exception
   {
-    CommandExecutor executor = new CommandExecutor(cmd);
-    executor.start();
-
-    if(timeout > 0){
-      executor.join(timeout);
-    }else{
-      executor.join();
-    }
+    return execute(cmd, timeout, null);
+  }
 
+  /**
+   * Execute the supplied command.
+   *
+   * @param cmd The command to execute.
+   * @param timeout Timeout in milliseconds, after which the process is
+   * destroyed.
+   * @param listener Listener notified of each line of output, or null.  The
+   * listener is invoked from the threads draining the process streams.
+   * @return The CommandExecutor instance containing the ending state of the
+   * process.
+   */
+  public static CommandExecutor execute(
+      String[] cmd, long timeout, OutputListener listener)
+    throws Exception
+  {
+    CommandExecutor executor = new CommandExecutor(cmd);
+    executor.listener = listener;
+    executor.run(timeout);
     return executor;
   }
 
   /**
-   * Run the thread.
+   * Runs the command on the current thread without a timeout.
    */
   public void run()
+  {
+    run(-1);
+  }
+
+  /**
+   * Runs the command on the current thread.
+   *
+   * @param timeout Timeout in milliseconds, or a value less than 1 for none.
+   */
+  protected void run(long timeout)
   {
     logger.info(this.toString());
-    Runtime runtime = Runtime.getRuntime();
+    long start = System.currentTimeMillis();
+    TimerTask timeoutTask = null;
     try{
-      process = runtime.exec(cmd);
+      process = Runtime.getRuntime().exec(cmd);
+      register(this);
 
-      shutdownHook = new ShutdownHook();
-      try{
-        runtime.addShutdownHook(shutdownHook);
-      }catch(IllegalStateException ignore){
-        // happens if this is called during shutdown
+      if(timeout > 0){
+        timeoutTask = new TimerTask(){
+          public void run(){
+            logger.info("Timeout exceeded, terminating process for command: " +
+                CommandExecutor.this);
+            timedOut = true;
+            process.destroy();
+          }
+        };
+        getTimer().schedule(timeoutTask, timeout);
       }
 
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      Thread outThread = createOutThread(out);
-      outThread.start();
-
-      ByteArrayOutputStream err = new ByteArrayOutputStream();
-      Thread errThread = createErrThread(err);
-      errThread.start();
+      ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+      ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+      Drain out = drain(createOutThread(outBuffer), outBuffer,
+          process.getInputStream(), false);
+      Drain err = drain(createErrThread(errBuffer), errBuffer,
+          process.getErrorStream(), true);
 
       returnCode = process.waitFor();
-      outThread.join(1000);
-      errThread.join(1000);
+      out.join(DRAIN_TIMEOUT);
+      err.join(DRAIN_TIMEOUT);
 
       if (result == null){
         result = out.toString();
@@ -131,18 +200,21 @@ public class CommandExecutor
       if (error == null){
         error = err.toString();
       }
+    }catch(InterruptedException ie){
+      logger.info("Interrupted, terminating process for command: " + this);
+      interrupted = true;
+      process.destroy();
+      Thread.currentThread().interrupt();
     }catch(Exception e){
       returnCode = 12;
       error = e.getMessage();
-      e.printStackTrace();
+      logger.error("Error executing command: " + this, e);
     }finally{
-      if (shutdownHook != null){
-        try{
-          runtime.removeShutdownHook(shutdownHook);
-        }catch(IllegalStateException ignore){
-          // happens if this is called during shutdown
-        }
+      if(timeoutTask != null){
+        timeoutTask.cancel();
       }
+      unregister(this);
+      duration = System.currentTimeMillis() - start;
     }
   }
 
@@ -151,19 +223,15 @@ public class CommandExecutor
    *
    * @param out An OutputStream which can be used to buffer up the entire
    * process output.
-   * @return The Thread instance.
+   * @return The Thread instance, or null to drain the stream on the shared
+   * pool.
+   * @deprecated The output stream is drained on a shared pool of threads.
+   * Overriding this method is still honoured, but use an
+   * {@link OutputListener} to receive the command's output instead.
    */
-  protected Thread createOutThread(final OutputStream out)
+  protected Thread createOutThread(OutputStream out)
   {
-    return new Thread(){
-      public void run (){
-        try{
-          IOUtils.copy(process.getInputStream(), out);
-        }catch(IOException ioe){
-          ioe.printStackTrace();
-        }
-      }
-    };
+    return null;
   }
 
   /**
@@ -171,19 +239,40 @@ public class CommandExecutor
    *
    * @param err An OutputStream which can be used to buffer up the entire
    * process error output.
-   * @return The Thread instance.
+   * @return The Thread instance, or null to drain the stream on the shared
+   * pool.
+   * @deprecated The error stream is drained on a shared pool of threads.
+   * Overriding this method is still honoured, but use an
+   * {@link OutputListener} to receive the command's output instead.
    */
-  protected Thread createErrThread(final OutputStream err)
+  protected Thread createErrThread(OutputStream err)
   {
-    return new Thread(){
-      public void run (){
-        try{
-          IOUtils.copy(process.getErrorStream(), err);
-        }catch(IOException ioe){
-          ioe.printStackTrace();
-        }
-      }
-    };
+    return null;
+  }
+
+  /**
+   * Starts draining one of the process streams, either on the supplied
+   * thread from a subclass or on the shared pool.
+   *
+   * @param thread The subclass thread, or null to use the pool.
+   * @param buffer The buffer the subclass thread writes to.
+   * @param stream The process stream.
+   * @param errorStream true if the stream is the error stream.
+   * @return The Drain.
+   */
+  private Drain drain(
+      Thread thread,
+      ByteArrayOutputStream buffer,
+      InputStream stream,
+      boolean errorStream)
+  {
+    if(thread != null){
+      thread.start();
+      return new Drain(thread, buffer);
+    }
+    Drain drain = new Drain(stream, errorStream);
+    pool.execute(drain);
+    return drain;
   }
 
   /**
@@ -226,6 +315,16 @@ public class CommandExecutor
     return error;
   }
 
+  /**
+   * Gets the number of milliseconds the command took to run.
+   *
+   * @return The duration.
+   */
+  public long getDuration()
+  {
+    return duration;
+  }
+
   /**
    * Determines if the process was terminated during a shutdown.
    *
@@ -236,19 +335,236 @@ public class CommandExecutor
     return this.shutdown;
   }
 
+  /**
+   * Determines if the process was terminated for exceeding its timeout.
+   *
+   * @return true if timed out, false otherwise.
+   */
+  public boolean isTimedOut()
+  {
+    return this.timedOut;
+  }
+
+  /**
+   * Determines if the process was terminated because the thread running it
+   * was interrupted.
+   *
+   * @return true if interrupted, false otherwise.
+   */
+  public boolean isInterrupted()
+  {
+    return this.interrupted;
+  }
+
   public String toString()
   {
     return StringUtils.join(cmd, ' ');
   }
 
-  private class ShutdownHook
-    extends Thread
+  private static synchronized Timer getTimer()
   {
-    public void run(){
-      logger.info(
-          "Terminating process for command: " + Arrays.toString(cmd));
-      shutdown = true;
-      process.destroy();
+    if(timer == null){
+      timer = new Timer(true);
+    }
+    return timer;
+  }
+
+  /**
+   * Tracks the supplied running command so that it can be terminated on
+   * shutdown, installing the single shutdown hook on first use.
+   */
+  private static void register(CommandExecutor executor)
+  {
+    synchronized(running){
+      running.add(executor);
+      if(reaper == null){
+        reaper = new Thread(){
+          public void run(){
+            ArrayList executors;
+            synchronized(running){
+              executors = new ArrayList(running);
+            }
+            for (Iterator ii = executors.iterator(); ii.hasNext();){
+              CommandExecutor executor = (CommandExecutor)ii.next();
+              logger.info(
+                  "Terminating process for command: " + executor);
+              executor.shutdown = true;
+              executor.destroy();
+            }
+          }
+        };
+        try{
+          Runtime.getRuntime().addShutdownHook(reaper);
+        }catch(IllegalStateException ignore){
+          // happens if this is called during shutdown
+        }
+      }
+    }
+  }
+
+  private static void unregister(CommandExecutor executor)
+  {
+    synchronized(running){
+      running.remove(executor);
+    }
+  }
+
+  /**
+   * Listener notified of each line written by a command.
+   */
+  public static interface OutputListener
+  {
+    /**
+     * Invoked for each line written to the command's standard output.
+     *
+     * @param executor The executor running the command.
+     * @param line The line, without its line terminator.
+     */
+    public void outputLine(CommandExecutor executor, String line);
+
+    /**
+     * Invoked for each line written to the command's standard error.
+     *
+     * @param executor The executor running the command.
+     * @param line The line, without its line terminator.
+     */
+    public void errorLine(CommandExecutor executor, String line);
+  }
+
+  /**
+   * Reads one of the process streams until it is closed, retaining the last
+   * {@link #MAX_CAPTURE} characters and passing complete lines to the
+   * listener.
+   */
+  private class Drain
+    implements Runnable
+  {
+    private InputStream stream;
+    private boolean errorStream;
+    private char[] tail = new char[MAX_CAPTURE];
+    private int length;
+    private int end;
+    private boolean finished;
+    private Thread thread;
+    private ByteArrayOutputStream buffer;
+
+    public Drain(InputStream stream, boolean errorStream)
+    {
+      this.stream = stream;
+      this.errorStream = errorStream;
+    }
+
+    /**
+     * Constructs a drain over a stream read by a subclass supplied thread.
+     *
+     * @param thread The thread reading the stream.
+     * @param buffer The buffer the thread writes the stream to.
+     */
+    public Drain(Thread thread, ByteArrayOutputStream buffer)
+    {
+      this.thread = thread;
+      this.buffer = buffer;
+    }
+
+    public void run()
+    {
+      Reader reader = new InputStreamReader(stream);
+      StringBuffer line = listener != null ? new StringBuffer() : null;
+      char[] buffer = new char[4096];
+      try{
+        int read;
+        while((read = reader.read(buffer)) != -1){
+          append(buffer, read);
+          if(line != null){
+            for (int ii = 0; ii < read; ii++){
+              char c = buffer[ii];
+              if(c == '\n'){
+                line(line);
+              }else{
+                line.append(c);
+              }
+            }
+          }
+        }
+        if(line != null && line.length() > 0){
+          line(line);
+        }
+      }catch(IOException ioe){
+        logger.debug("Error reading process stream: " + CommandExecutor.this, ioe);
+      }finally{
+        IOUtils.closeQuietly(reader);
+        synchronized(this){
+          finished = true;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Waits up to the supplied number of milliseconds for the stream to be
+     * read to its end.
+     *
+     * @param timeout The timeout in milliseconds.
+     */
+    public synchronized void join(long timeout)
+      throws InterruptedException
+    {
+      if(thread != null){
+        thread.join(timeout);
+        return;
+      }
+      long stop = System.currentTimeMillis() + timeout;
+      long remaining = timeout;
+      while(!finished && remaining > 0){
+        wait(remaining);
+        remaining = stop - System.currentTimeMillis();
+      }
+    }
+
+    /**
+     * Gets the retained portion of the stream.
+     *
+     * @return The retained output.
+     */
+    public synchronized String toString()
+    {
+      if(buffer != null){
+        return buffer.toString();
+      }
+      int start = (end - length + tail.length) % tail.length;
+      if(start + length <= tail.length){
+        return new String(tail, start, length);
+      }
+      return new String(tail, start, tail.length - start) +
+        new String(tail, 0, end);
+    }
+
+    private synchronized void append(char[] chars, int count)
+    {
+      int offset = count > tail.length ? count - tail.length : 0;
+      for (int ii = offset; ii < count; ii++){
+        tail[end] = chars[ii];
+        end = (end + 1) % tail.length;
+      }
+      length = Math.min(length + count - offset, tail.length);
+    }
+
+    private void line(StringBuffer line)
+    {
+      int len = line.length();
+      if(len > 0 && line.charAt(len - 1) == '\r'){
+        line.setLength(len - 1);
+      }
+      try{
+        if(errorStream){
+          listener.errorLine(CommandExecutor.this, line.toString());
+        }else{
+          listener.outputLine(CommandExecutor.this, line.toString());
+        }
+      }catch(RuntimeException re){
+        logger.error("Error notifying output listener: " + CommandExecutor.this, re);
+      }
+      line.setLength(0);
     }
   }
 }
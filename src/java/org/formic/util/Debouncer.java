@@ -0,0 +1,100 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delays running a piece of work until no new request for it has been made
+ * for a given period (ex. validating a field once the user stops typing).
+ * <p/>
+ * All debouncers share a single daemon scheduler thread, so the number of
+ * threads used is constant regardless of how many debouncers exist or how
+ * often they are triggered.  Work runs on that shared thread and should
+ * therefore be brief.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class Debouncer
+{
+  private static final Logger logger = LoggerFactory.getLogger(Debouncer.class);
+
+  private static Timer timer;
+
+  private long delay;
+  private TimerTask task;
+
+  /**
+   * Constructs a new debouncer.
+   *
+   * @param delay The quiet period, in milliseconds, to wait before running.
+   */
+  public Debouncer(long delay)
+  {
+    this.delay = delay;
+  }
+
+  /**
+   * Schedules the supplied work to run once the quiet period elapses,
+   * cancelling any work previously scheduled on this debouncer which has not
+   * yet started.
+   *
+   * @param runnable The work to run.
+   */
+  public synchronized void schedule(final Runnable runnable)
+  {
+    if(task != null){
+      task.cancel();
+    }
+    task = new TimerTask(){
+      public void run(){
+        try{
+          runnable.run();
+        }catch(Throwable t){
+          // don't let one failure kill the shared scheduler thread.
+          logger.error("Error running debounced task.", t);
+        }
+      }
+    };
+    getTimer().schedule(task, delay);
+  }
+
+  /**
+   * Cancels any scheduled work which has not yet started.
+   */
+  public synchronized void cancel()
+  {
+    if(task != null){
+      task.cancel();
+      task = null;
+    }
+  }
+
+  private static synchronized Timer getTimer()
+  {
+    if(timer == null){
+      timer = new Timer(true);
+    }
+    return timer;
+  }
+}
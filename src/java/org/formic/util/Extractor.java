@@ -1,6 +1,6 @@
 /**
  * Formic installer framework.
- * Copyright (C) 2005 - 2010  Eric Van Dewoestine
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
  *
  * This library is free software; you can redistribute it and/or
  * modify it under the terms of the GNU Lesser General Public
@@ -18,15 +18,20 @@
  */
 package org.formic.util;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -38,9 +43,12 @@ import org.apache.commons.io.IOUtils;
  */
 public class Extractor
 {
+  private static final int BUFFER_SIZE = 1024 * 64;
+
   /**
    * Reads an archive from the classpath and extracts it to the specified
-   * destination.
+   * destination.  The archive is streamed directly from the classpath, so no
+   * temporary copy of it is written to disk.
    *
    * @param resource The resource representing the archive.
    * @param dest The destination to extract the archive to.
@@ -48,14 +56,95 @@ public class Extractor
   public static void extractResource(String resource, File dest)
     throws IOException
   {
+    extractResource(resource, dest, 1);
+  }
+
+  /**
+   * Reads an archive from the classpath and extracts it to the specified
+   * destination using the specified number of worker threads.
+   * <p/>
+   * When a single thread is requested the archive is streamed directly from
+   * the classpath.  Parallel extraction requires random access to the archive
+   * entries, so in that case the archive is first copied to a temp file.
+   *
+   * @param resource The resource representing the archive.
+   * @param dest The destination to extract the archive to.
+   * @param threads The number of worker threads to use, or a value less than
+   * 1 to use one worker per available processor.
+   */
+  public static void extractResource(String resource, File dest, int threads)
+    throws IOException
+  {
+    extractResource(resource, dest, null, threads);
+  }
+
+  /**
+   * Reads an archive from the classpath and extracts it to the specified
+   * destination using the specified number of worker threads.
+   * <p/>
+   * When a single thread is requested the archive is streamed directly from
+   * the classpath, using the installer's {@link PayloadIndex}, when present,
+   * to supply the listener with the entry count and total size.
+   *
+   * @param resource The resource representing the archive.
+   * @param dest The destination to extract the archive to.
+   * @param listener Optional listener to notify of extraction progress.
+   * @param threads The number of worker threads to use, or a value less than
+   * 1 to use one worker per available processor.
+   */
+  public static void extractResource(
+      String resource, File dest, ArchiveExtractionListener listener, int threads)
+    throws IOException
+  {
+    if(threads == 1){
+      int count = -1;
+      long total = -1;
+      PayloadIndex index = PayloadIndex.load();
+      PayloadIndex.Archive archive =
+        index != null ? index.getArchive(resource) : null;
+      if(archive != null){
+        count = archive.getEntryCount();
+        total = archive.getSize();
+      }
+
+      InputStream in = null;
+      try{
+        in = openResource(resource);
+        Extractor.extractStream(in, dest, listener, count, total);
+        in.close();
+      }finally{
+        IOUtils.closeQuietly(in);
+      }
+      return;
+    }
+
     File archive = File.createTempFile(
         FilenameUtils.getBaseName(resource),
         "." + FilenameUtils.getExtension(resource));
-    Extractor.readArchive(resource, archive);
-    Extractor.extractArchive(archive, dest, null);
+    try{
+      Extractor.readArchive(resource, archive);
+      Extractor.extractArchive(archive, dest, listener, threads);
+    }finally{
+      // delete temp archive.
+      archive.delete();
+    }
+  }
 
-    // delete temp archive.
-    archive.delete();
+  /**
+   * Opens an input stream to the supplied classpath resource.
+   *
+   * @param resource The resource.
+   * @return The InputStream.
+   * @throws IOException If the resource could not be found.
+   */
+  public static InputStream openResource(String resource)
+    throws IOException
+  {
+    InputStream in = Extractor.class.getResourceAsStream(resource);
+    if (in == null){
+      throw new IOException("Resource not found: " + resource);
+    }
+    return new BufferedInputStream(in, BUFFER_SIZE);
   }
 
   /**
@@ -71,12 +160,8 @@ public class Extractor
     FileOutputStream out = null;
     InputStream in = null;
     try{
+      in = openResource(resource);
       out = new FileOutputStream(dest);
-      in = Extractor.class.getResourceAsStream(resource);
-
-      if (in == null){
-        throw new IOException("Resource not found: " + resource);
-      }
 
       IOUtils.copy(in, out);
 
@@ -93,11 +178,144 @@ public class Extractor
    *
    * @param archive The archive to extract.
    * @param dest The directory to extract it to.
+   * @param listener Optional listener to notify of extraction progress.
    */
   public static void extractArchive(
       File archive, File dest, ArchiveExtractionListener listener)
     throws IOException
   {
+    extractArchive(archive, dest, listener, 1);
+  }
+
+  /**
+   * Extracts the specified archive to the supplied destination, spreading the
+   * inflation and writing of entries across the specified number of worker
+   * threads.
+   * <p/>
+   * Listener callbacks are serialized and delivered in archive order, though
+   * when more than one thread is used they may be invoked from a worker thread
+   * and the next file may be started before the previous one has finished.
+   *
+   * @param archive The archive to extract.
+   * @param dest The directory to extract it to.
+   * @param listener Optional listener to notify of extraction progress.
+   * @param threads The number of worker threads to use, or a value less than
+   * 1 to use one worker per available processor.
+   */
+  public static void extractArchive(
+      File archive, File dest, ArchiveExtractionListener listener, int threads)
+    throws IOException
+  {
+    ZipFile file = null;
+    try{
+      file = new ZipFile(archive);
+
+      if(listener != null){
+        listener.startExtraction(file.size());
+      }
+
+      ArrayList entries = new ArrayList(file.size());
+      for(Enumeration ii = file.entries(); ii.hasMoreElements();){
+        entries.add(ii.nextElement());
+      }
+
+      if(threads < 1){
+        threads = WorkerPool.defaultSize();
+      }
+      threads = Math.min(threads, entries.size());
+
+      ByteProgress progress = null;
+      if(listener instanceof ByteProgress.Listener){
+        long total = 0;
+        for(int ii = 0; ii < entries.size() && total >= 0; ii++){
+          long size = ((ZipEntry)entries.get(ii)).getSize();
+          total = size >= 0 ? total + size : -1;
+        }
+        progress = new ByteProgress(total, (ByteProgress.Listener)listener);
+      }
+
+      if(threads <= 1){
+        for(int ii = 0; ii < entries.size(); ii++){
+          ZipEntry entry = (ZipEntry)entries.get(ii);
+          if(!entry.isDirectory()){
+            if(listener != null){
+              listener.startExtractingFile(ii, entry.getName());
+            }
+
+            extractEntry(file, entry, dest, progress);
+
+            if(listener != null){
+              listener.finishExtractingFile(ii, entry.getName());
+            }
+          }
+        }
+      }else{
+        Extraction extraction =
+          new Extraction(file, entries, dest, listener, progress);
+        WorkerPool pool = new WorkerPool("extractor", threads);
+        for(int ii = 0; ii < threads; ii++){
+          pool.execute(extraction);
+        }
+        pool.shutdown();
+        try{
+          pool.join();
+        }catch(InterruptedException ie){
+          // stop claiming entries, but let the workers finish the ones they
+          // are writing before the zip file is closed out from under them.
+          extraction.failed(new InterruptedIOException(ie.getMessage()));
+          boolean drained = false;
+          while(!drained){
+            try{
+              pool.join();
+              drained = true;
+            }catch(InterruptedException ignore){
+            }
+          }
+          Thread.currentThread().interrupt();
+        }
+        extraction.checkError();
+      }
+
+      if(progress != null){
+        progress.finish();
+      }
+    }finally{
+      try{
+        file.close();
+      }catch(Exception ignore){
+      }
+    }
+
+    if(listener != null){
+      listener.finishExtraction();
+    }
+  }
+
+  /**
+   * Upgrades an existing extraction of an earlier version of the specified
+   * archive, rewriting only those files whose size or CRC differ from what is
+   * already installed and deleting files the new archive no longer contains.
+   * <p/>
+   * Installed files are compared against the supplied install manifest, when
+   * it has an entry for them, otherwise against the file on disk.  Once the
+   * upgrade completes the manifest is rewritten to reflect the new archive.
+   * Listeners are notified of skipped files as well so that progress still
+   * reaches completion.
+   *
+   * @param archive The archive to extract.
+   * @param dest The directory to extract it to.
+   * @param manifest The install manifest (need not exist yet).
+   * @param listener Optional listener to notify of extraction progress.
+   * @return List of the paths deleted because the new archive no longer
+   * contains them.
+   */
+  public static List upgradeArchive(
+      File archive, File dest, File manifest, ArchiveExtractionListener listener)
+    throws IOException
+  {
+    InstallManifest previous = InstallManifest.read(manifest);
+    InstallManifest current = new InstallManifest();
+
     ZipFile file = null;
     try{
       file = new ZipFile(archive);
@@ -110,29 +328,18 @@ public class Extractor
       for(int ii = 0; entries.hasMoreElements(); ii++){
         ZipEntry entry = (ZipEntry)entries.nextElement();
         if(!entry.isDirectory()){
-          // create parent directories if necessary.
-          String name = dest + "/" + entry.getName();
-          if(name.indexOf('/') != -1){
-            File dir = new File(name.substring(0, name.lastIndexOf('/')));
-            if(!dir.exists()){
-              dir.mkdirs();
-            }
-          }
-
+          String name = entry.getName();
           if(listener != null){
-            listener.startExtractingFile(ii, entry.getName());
+            listener.startExtractingFile(ii, name);
           }
 
-          FileOutputStream out = new FileOutputStream(name);
-          InputStream in = file.getInputStream(entry);
-
-          IOUtils.copy(in, out);
-
-          in.close();
-          out.close();
+          if(!previous.isCurrent(dest, name, entry.getSize(), entry.getCrc())){
+            extractEntry(file, entry, dest, null);
+          }
+          current.add(name, entry.getSize(), entry.getCrc());
 
           if(listener != null){
-            listener.finishExtractingFile(ii, entry.getName());
+            listener.finishExtractingFile(ii, name);
           }
         }
       }
@@ -143,21 +350,178 @@ public class Extractor
       }
     }
 
+    List removed = previous.removeStale(dest, current);
+    current.write(manifest);
+
     if(listener != null){
       listener.finishExtraction();
     }
+    return removed;
+  }
+
+  /**
+   * Extracts the zip archive read from the supplied stream to the supplied
+   * destination in a single pass.  Since the number of entries isn't known up
+   * front, the listener's startExtraction will be passed -1.
+   *
+   * @param in The InputStream to read the archive from (left open).
+   * @param dest The directory to extract it to.
+   * @param listener Optional listener to notify of extraction progress.
+   */
+  public static void extractStream(
+      InputStream in, File dest, ArchiveExtractionListener listener)
+    throws IOException
+  {
+    extractStream(in, dest, listener, -1, -1);
+  }
+
+  /**
+   * Extracts the zip archive read from the supplied stream to the supplied
+   * destination in a single pass.
+   *
+   * @param in The InputStream to read the archive from (left open).
+   * @param dest The directory to extract it to.
+   * @param listener Optional listener to notify of extraction progress.
+   * @param count The number of entries in the archive, or -1 if unknown.
+   * @param total The total uncompressed size of the archive, or -1 if unknown.
+   */
+  private static void extractStream(
+      InputStream in,
+      File dest,
+      ArchiveExtractionListener listener,
+      int count,
+      long total)
+    throws IOException
+  {
+    if(listener != null){
+      listener.startExtraction(count);
+    }
+
+    ByteProgress progress = null;
+    if(listener instanceof ByteProgress.Listener){
+      progress = new ByteProgress(total, (ByteProgress.Listener)listener);
+    }
+
+    ZipInputStream zip = new ZipInputStream(in);
+    ZipEntry entry = null;
+    for(int ii = 0; (entry = zip.getNextEntry()) != null; ii++){
+      if(!entry.isDirectory()){
+        if(listener != null){
+          listener.startExtractingFile(ii, entry.getName());
+        }
+
+        InputStream source = zip;
+        if(progress != null){
+          source = new ProgressInputStream(zip, progress);
+        }
+
+        FileOutputStream out = null;
+        try{
+          out = createFile(dest, entry);
+          IOUtils.copy(source, out);
+          out.close();
+        }finally{
+          IOUtils.closeQuietly(out);
+        }
+        setTime(dest, entry);
+
+        if(listener != null){
+          listener.finishExtractingFile(ii, entry.getName());
+        }
+      }
+      zip.closeEntry();
+    }
+
+    if(progress != null){
+      progress.finish();
+    }
+
+    if(listener != null){
+      listener.finishExtraction();
+    }
+  }
+
+  /**
+   * Extracts a single file entry from the supplied archive.
+   *
+   * @param file The archive.
+   * @param entry The entry to extract.
+   * @param dest The directory to extract it to.
+   * @param progress Optional ByteProgress to record bytes written to.
+   */
+  private static void extractEntry(
+      ZipFile file, ZipEntry entry, File dest, ByteProgress progress)
+    throws IOException
+  {
+    FileOutputStream out = null;
+    InputStream in = null;
+    try{
+      out = createFile(dest, entry);
+      in = file.getInputStream(entry);
+      if(progress != null){
+        in = new ProgressInputStream(in, progress);
+      }
+
+      IOUtils.copy(in, out);
+
+      in.close();
+      out.close();
+    }finally{
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+    setTime(dest, entry);
+  }
+
+  /**
+   * Creates the file for the supplied entry, creating any necessary parent
+   * directories.
+   *
+   * @param dest The directory the archive is being extracted to.
+   * @param entry The entry.
+   * @return The FileOutputStream to write the entry's contents to.
+   */
+  private static FileOutputStream createFile(File dest, ZipEntry entry)
+    throws IOException
+  {
+    // create parent directories if necessary.
+    String name = dest + "/" + entry.getName();
+    if(name.indexOf('/') != -1){
+      File dir = new File(name.substring(0, name.lastIndexOf('/')));
+      if(!dir.exists()){
+        dir.mkdirs();
+      }
+    }
+    return new FileOutputStream(name);
+  }
+
+  /**
+   * Sets the last modified time of the file extracted for the supplied entry
+   * to that of the entry, as ant's expand does.
+   *
+   * @param dest The directory the archive is being extracted to.
+   * @param entry The entry.
+   */
+  private static void setTime(File dest, ZipEntry entry)
+  {
+    long time = entry.getTime();
+    if(time != -1){
+      new File(dest, entry.getName()).setLastModified(time);
+    }
   }
 
   /**
    * Listener that can be notified of significant events when extracting an
-   * archive.
+   * archive.  Listeners which also implement {@link ByteProgress.Listener}
+   * will additionally receive rate limited, byte level progress updates.
    */
   public static interface ArchiveExtractionListener
   {
     /**
      * Invoked just before beginning to extract files.
      *
-     * @param count The number of files to be extracted.
+     * @param count The number of files to be extracted, or -1 if not known
+     * (when extracting from a stream).
      */
     public void startExtraction(int count);
 
@@ -182,4 +546,121 @@ public class Extractor
      */
     public void finishExtractingFile(int index, String file);
   }
+
+  /**
+   * Shared state of a parallel extraction.  Each worker runs this instance,
+   * claiming entries in archive order until none remain, while listener
+   * notifications are serialized and kept in archive order.
+   */
+  private static class Extraction
+    implements Runnable
+  {
+    private ZipFile file;
+    private List entries;
+    private File dest;
+    private ArchiveExtractionListener listener;
+    private ByteProgress progress;
+    private boolean[] finished;
+    private int next;
+    private int nextFinished;
+    private Exception error;
+
+    public Extraction(
+        ZipFile file,
+        List entries,
+        File dest,
+        ArchiveExtractionListener listener,
+        ByteProgress progress)
+    {
+      this.file = file;
+      this.entries = entries;
+      this.dest = dest;
+      this.listener = listener;
+      this.progress = progress;
+      this.finished = new boolean[entries.size()];
+    }
+
+    public void run()
+    {
+      int index = -1;
+      while((index = claim()) != -1){
+        try{
+          extractEntry(file, (ZipEntry)entries.get(index), dest, progress);
+          finished(index);
+        }catch(IOException ioe){
+          failed(ioe);
+        }catch(RuntimeException re){
+          failed(re);
+        }
+      }
+    }
+
+    /**
+     * Claims the next file entry to extract.
+     *
+     * @return The index of the entry or -1 if no entries remain or an error
+     * has occurred.
+     */
+    private synchronized int claim()
+    {
+      while(error == null && next < entries.size()){
+        int index = next++;
+        ZipEntry entry = (ZipEntry)entries.get(index);
+        if(entry.isDirectory()){
+          finished[index] = true;
+          continue;
+        }
+
+        if(listener != null){
+          listener.startExtractingFile(index, entry.getName());
+        }
+        return index;
+      }
+      return -1;
+    }
+
+    /**
+     * Marks the supplied entry as extracted and notifies the listener of all
+     * entries, in order, that have now finished.
+     *
+     * @param index The index of the extracted entry.
+     */
+    private synchronized void finished(int index)
+    {
+      finished[index] = true;
+      while(nextFinished < finished.length && finished[nextFinished]){
+        ZipEntry entry = (ZipEntry)entries.get(nextFinished);
+        if(listener != null && !entry.isDirectory()){
+          listener.finishExtractingFile(nextFinished, entry.getName());
+        }
+        nextFinished++;
+      }
+    }
+
+    /**
+     * Records the first error encountered, halting further extraction.
+     *
+     * @param e The error.
+     */
+    private synchronized void failed(Exception e)
+    {
+      if(error == null){
+        error = e;
+      }
+    }
+
+    /**
+     * Re-throws the first error encountered by any of the workers, if any.
+     */
+    private synchronized void checkError()
+      throws IOException
+    {
+      if(error instanceof RuntimeException){
+        throw (RuntimeException)error;
+      }
+      if(error != null){
+        throw (IOException)error;
+      }
+    }
+  }
 }
@@ -0,0 +1,290 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.List;
+
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reads selected entries of a zip archive from a forward only stream using
+ * the entry offsets and compressed sizes recorded in the archive's
+ * {@link PayloadIndex}.  Entries which are not requested are skipped over
+ * without being inflated.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class IndexedArchiveReader
+{
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+
+  private InputStream in;
+  private long position;
+  private long time = -1;
+
+  /**
+   * Constructs a new reader.
+   *
+   * @param in The stream of the archive, positioned at its start.
+   */
+  public IndexedArchiveReader(InputStream in)
+  {
+    this.in = in;
+  }
+
+  /**
+   * Determines if the supplied archive index contains the information needed
+   * to read its entries with this reader.
+   *
+   * @param archive The archive index.
+   * @return true if supported, false otherwise.
+   */
+  public static boolean isSupported(PayloadIndex.Archive archive)
+  {
+    for(Iterator ii = archive.getEntries().iterator(); ii.hasNext();){
+      PayloadIndex.Entry entry = (PayloadIndex.Entry)ii.next();
+      if(entry.getOffset() < 0 || entry.getCompressedSize() < 0){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the entries of the supplied archive index sorted in the order they
+   * must be read.
+   *
+   * @param archive The archive index.
+   * @return List of PayloadIndex.Entry.
+   */
+  public static List getEntries(PayloadIndex.Archive archive)
+  {
+    List entries = new ArrayList(archive.getEntries());
+    Collections.sort(entries, new Comparator(){
+      public int compare(Object o1, Object o2){
+        long offset1 = ((PayloadIndex.Entry)o1).getOffset();
+        long offset2 = ((PayloadIndex.Entry)o2).getOffset();
+        return offset1 < offset2 ? -1 : (offset1 == offset2 ? 0 : 1);
+      }
+    });
+    return entries;
+  }
+
+  /**
+   * Opens the supplied entry, skipping over any data preceding it.  Entries
+   * must be opened in offset order (see {@link #getEntries}).
+   *
+   * @param entry The entry to open.
+   * @return InputStream of the entry's uncompressed contents.
+   */
+  public InputStream open(PayloadIndex.Entry entry)
+    throws IOException
+  {
+    // any unread portion of the previous entry is skipped over here without
+    // being inflated.
+    if(entry.getOffset() < position){
+      throw new IOException(
+          "Entry '" + entry.getPath() + "' requested out of order.");
+    }
+    skip(entry.getOffset() - position);
+
+    byte[] header = new byte[LOCAL_HEADER_SIZE];
+    read(header);
+    if(readInt(header, 0) != LOCAL_HEADER_SIGNATURE){
+      throw new IOException(
+          "Invalid local header for entry '" + entry.getPath() + "'.");
+    }
+    int method = readShort(header, 8);
+    time = dosToJavaTime(readShort(header, 12), readShort(header, 10));
+    skip(readShort(header, 26) + readShort(header, 28));
+
+    InputStream data = new BoundedInputStream(entry.getCompressedSize());
+    if(method == ZipEntry.DEFLATED){
+      // the inflater needs a trailing dummy byte when using nowrap.
+      data = new SequenceInputStream(
+          data, new ByteArrayInputStream(new byte[1]));
+      return new InflaterInputStream(data, new Inflater(true), 1024 * 8);
+    }else if(method == ZipEntry.STORED){
+      return data;
+    }
+    throw new IOException("Unsupported compression method " + method +
+        " for entry '" + entry.getPath() + "'.");
+  }
+
+  /**
+   * Gets the last modified time of the most recently opened entry.
+   *
+   * @return The time in milliseconds or -1 if no entry has been opened.
+   */
+  public long getTime()
+  {
+    return time;
+  }
+
+  /**
+   * Converts the supplied MS-DOS date and time to java time.
+   *
+   * @param date The MS-DOS date.
+   * @param time The MS-DOS time.
+   * @return The java time in milliseconds.
+   */
+  private static long dosToJavaTime(int date, int time)
+  {
+    Calendar calendar = new GregorianCalendar(
+        ((date >> 9) & 0x7f) + 1980,
+        ((date >> 5) & 0x0f) - 1,
+        date & 0x1f,
+        (time >> 11) & 0x1f,
+        (time >> 5) & 0x3f,
+        (time << 1) & 0x3e);
+    return calendar.getTime().getTime();
+  }
+
+  /**
+   * Skips the supplied number of bytes of the underlying stream.
+   *
+   * @param count The number of bytes to skip.
+   */
+  private void skip(long count)
+    throws IOException
+  {
+    while(count > 0){
+      long skipped = in.skip(count);
+      if(skipped <= 0){
+        if(in.read() == -1){
+          throw new EOFException();
+        }
+        skipped = 1;
+      }
+      count -= skipped;
+      position += skipped;
+    }
+  }
+
+  /**
+   * Fills the supplied buffer from the underlying stream.
+   *
+   * @param buffer The buffer.
+   */
+  private void read(byte[] buffer)
+    throws IOException
+  {
+    int offset = 0;
+    while(offset < buffer.length){
+      int read = in.read(buffer, offset, buffer.length - offset);
+      if(read == -1){
+        throw new EOFException();
+      }
+      offset += read;
+    }
+    position += buffer.length;
+  }
+
+  private static int readShort(byte[] buffer, int offset)
+  {
+    return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+  }
+
+  private static int readInt(byte[] buffer, int offset)
+  {
+    return readShort(buffer, offset) | (readShort(buffer, offset + 2) << 16);
+  }
+
+  /**
+   * Stream which reads at most a fixed number of bytes of the underlying
+   * stream, tracking the reader's position.
+   */
+  private class BoundedInputStream
+    extends FilterInputStream
+  {
+    private long remaining;
+
+    public BoundedInputStream(long length)
+    {
+      super(IndexedArchiveReader.this.in);
+      this.remaining = length;
+    }
+
+    public int read()
+      throws IOException
+    {
+      if(remaining <= 0){
+        return -1;
+      }
+      int b = super.read();
+      if(b != -1){
+        remaining--;
+        position++;
+      }
+      return b;
+    }
+
+    public int read(byte[] b, int off, int len)
+      throws IOException
+    {
+      if(remaining <= 0){
+        return -1;
+      }
+      int read = super.read(b, off, (int)Math.min(len, remaining));
+      if(read > 0){
+        remaining -= read;
+        position += read;
+      }
+      return read;
+    }
+
+    public long skip(long n)
+      throws IOException
+    {
+      long skipped = super.skip(Math.min(n, remaining));
+      if(skipped > 0){
+        remaining -= skipped;
+        position += skipped;
+      }
+      return skipped;
+    }
+
+    public int available()
+      throws IOException
+    {
+      return (int)Math.min(super.available(), remaining);
+    }
+
+    public void close()
+    {
+      // the underlying stream is owned by the reader.
+    }
+  }
+}
@@ -0,0 +1,287 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Manifest of the files written by an install, recording the size and CRC-32
+ * of each file relative to the install directory.  Used when upgrading an
+ * existing install to skip rewriting unchanged files and to remove files no
+ * longer shipped by the new version.
+ * <p/>
+ * The manifest is stored as a UTF-8 text file with one
+ * <code>crc size path</code> line per file.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class InstallManifest
+{
+  private static final String HEADER = "# formic install manifest 1";
+
+  private Map entries = new LinkedHashMap();
+
+  /**
+   * Reads the manifest from the supplied file.
+   *
+   * @param file The manifest file.
+   * @return The manifest, which will be empty if the file does not exist.
+   */
+  public static InstallManifest read(File file)
+    throws IOException
+  {
+    InstallManifest manifest = new InstallManifest();
+    if(file == null || !file.exists()){
+      return manifest;
+    }
+
+    BufferedReader reader = null;
+    try{
+      reader = new BufferedReader(
+          new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      String line = null;
+      while((line = reader.readLine()) != null){
+        if(line.length() == 0 || line.charAt(0) == '#'){
+          continue;
+        }
+        int crcEnd = line.indexOf(' ');
+        int sizeEnd = crcEnd != -1 ? line.indexOf(' ', crcEnd + 1) : -1;
+        if(sizeEnd == -1){
+          throw new IOException("Invalid install manifest entry: " + line);
+        }
+        try{
+          long crc = Long.parseLong(line.substring(0, crcEnd), 16);
+          long size = Long.parseLong(line.substring(crcEnd + 1, sizeEnd));
+          manifest.add(line.substring(sizeEnd + 1), size, crc);
+        }catch(NumberFormatException nfe){
+          throw new IOException("Invalid install manifest entry: " + line);
+        }
+      }
+    }finally{
+      IOUtils.closeQuietly(reader);
+    }
+    return manifest;
+  }
+
+  /**
+   * Writes this manifest to the supplied file.
+   *
+   * @param file The manifest file.
+   */
+  public void write(File file)
+    throws IOException
+  {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if(parent != null && !parent.exists()){
+      parent.mkdirs();
+    }
+
+    Writer writer = null;
+    try{
+      writer = new BufferedWriter(
+          new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+      writer.write(HEADER);
+      writer.write('\n');
+      for(Iterator ii = entries.values().iterator(); ii.hasNext();){
+        Entry entry = (Entry)ii.next();
+        writer.write(Long.toHexString(entry.crc));
+        writer.write(' ');
+        writer.write(String.valueOf(entry.size));
+        writer.write(' ');
+        writer.write(entry.path);
+        writer.write('\n');
+      }
+      writer.close();
+    }finally{
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
+  /**
+   * Adds (or replaces) the entry for the supplied path.
+   *
+   * @param path The file path relative to the install directory.
+   * @param size The file size.
+   * @param crc The CRC-32 of the file contents.
+   */
+  public void add(String path, long size, long crc)
+  {
+    entries.put(path, new Entry(path, size, crc));
+  }
+
+  /**
+   * Determines if this manifest contains an entry for the supplied path.
+   *
+   * @param path The file path relative to the install directory.
+   * @return true if contained, false otherwise.
+   */
+  public boolean contains(String path)
+  {
+    return entries.containsKey(path);
+  }
+
+  /**
+   * Gets the paths of all files in this manifest.
+   *
+   * @return Array of paths.
+   */
+  public String[] getPaths()
+  {
+    return (String[])entries.keySet().toArray(new String[entries.size()]);
+  }
+
+  /**
+   * Gets the number of files in this manifest.
+   *
+   * @return The number of files.
+   */
+  public int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Determines if the file at the supplied path under the install directory
+   * is already identical to the one about to be written.  The file is
+   * compared against this manifest's entry when one exists, otherwise the
+   * CRC of the file on disk is computed.  Note that when an entry exists only
+   * the size of the file on disk is verified, its contents are assumed to
+   * still match the recorded CRC.
+   *
+   * @param dir The install directory.
+   * @param path The file path relative to the install directory.
+   * @param size The size of the new file, or -1 if unknown.
+   * @param crc The CRC-32 of the new file, or -1 if unknown.
+   * @return true if the file is unchanged, false if it must be written.
+   */
+  public boolean isCurrent(File dir, String path, long size, long crc)
+    throws IOException
+  {
+    if(size < 0 || crc < 0){
+      return false;
+    }
+
+    File file = new File(dir, path);
+    if(!file.isFile() || file.length() != size){
+      return false;
+    }
+
+    Entry entry = (Entry)entries.get(path);
+    if(entry != null){
+      return entry.size == size && entry.crc == crc;
+    }
+    return crc(file) == crc;
+  }
+
+  /**
+   * Deletes the files recorded in this manifest that are not present in the
+   * supplied manifest of the new install, along with any directories left
+   * empty as a result.
+   *
+   * @param dir The install directory.
+   * @param current The manifest of the new install.
+   * @return List of the paths deleted.
+   */
+  public List removeStale(File dir, InstallManifest current)
+  {
+    List removed = new ArrayList();
+    for(Iterator ii = entries.keySet().iterator(); ii.hasNext();){
+      String path = (String)ii.next();
+      if(current.contains(path)){
+        continue;
+      }
+
+      File file = new File(dir, path);
+      if(file.isFile() && file.delete()){
+        removed.add(path);
+
+        // prune any directories emptied by the removal.
+        File parent = file.getParentFile();
+        while(parent != null && !parent.equals(dir)){
+          String[] children = parent.list();
+          if(children == null || children.length > 0 || !parent.delete()){
+            break;
+          }
+          parent = parent.getParentFile();
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Computes the CRC-32 of the supplied file.
+   *
+   * @param file The file.
+   * @return The CRC.
+   */
+  public static long crc(File file)
+    throws IOException
+  {
+    CRC32 crc = new CRC32();
+    InputStream in = null;
+    try{
+      in = new FileInputStream(file);
+      byte[] buffer = new byte[1024 * 64];
+      int read = 0;
+      while((read = in.read(buffer)) != -1){
+        crc.update(buffer, 0, read);
+      }
+    }finally{
+      IOUtils.closeQuietly(in);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Single file entry of the manifest.
+   */
+  private static class Entry
+  {
+    public String path;
+    public long size;
+    public long crc;
+
+    public Entry(String path, long size, long crc)
+    {
+      this.path = path;
+      this.size = size;
+      this.crc = crc;
+    }
+  }
+}
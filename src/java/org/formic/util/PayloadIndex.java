@@ -0,0 +1,545 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Binary index of the payload archives packaged into an installer, listing
+ * for each archive entry its path, compressed and uncompressed sizes, CRC,
+ * SHA-256 digest and local header offset within the archive.
+ * <p/>
+ * The index is generated at build time by {@link org.formic.ant.PackageTask}
+ * and embedded in the installer jar as {@link #RESOURCE}, allowing the
+ * installer to determine payload sizes, report progress and verify extracted
+ * files without first scanning or decompressing the archives.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class PayloadIndex
+{
+  /**
+   * Name of the classpath resource the index is stored under.
+   */
+  public static final String RESOURCE = "/formic-payload.index";
+
+  private static final int MAGIC = 0x464d5049; // FMPI
+  private static final int VERSION = 1;
+  private static final String DIGEST = "SHA-256";
+
+  private static PayloadIndex instance;
+  private static boolean loaded;
+
+  private Map archives = new LinkedHashMap();
+
+  /**
+   * Loads the index embedded in the installer jar.
+   *
+   * @return The index or null if the installer contains no index.
+   */
+  public static synchronized PayloadIndex load()
+    throws IOException
+  {
+    if(!loaded){
+      InputStream in = PayloadIndex.class.getResourceAsStream(RESOURCE);
+      if(in != null){
+        try{
+          instance = read(in);
+        }finally{
+          IOUtils.closeQuietly(in);
+        }
+      }
+      loaded = true;
+    }
+    return instance;
+  }
+
+  /**
+   * Reads an index from the supplied stream.
+   *
+   * @param in The InputStream to read from (left open).
+   * @return The PayloadIndex.
+   */
+  public static PayloadIndex read(InputStream in)
+    throws IOException
+  {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if(data.readInt() != MAGIC){
+      throw new IOException("Not a payload index.");
+    }
+    int version = data.readInt();
+    if(version != VERSION){
+      throw new IOException("Unsupported payload index version: " + version);
+    }
+
+    PayloadIndex index = new PayloadIndex();
+    int archiveCount = data.readInt();
+    for(int ii = 0; ii < archiveCount; ii++){
+      Archive archive = new Archive(data.readUTF());
+      int entryCount = data.readInt();
+      for(int jj = 0; jj < entryCount; jj++){
+        Entry entry = new Entry();
+        entry.path = data.readUTF();
+        entry.directory = data.readBoolean();
+        entry.compressedSize = data.readLong();
+        entry.size = data.readLong();
+        entry.crc = data.readLong();
+        entry.offset = data.readLong();
+        int length = data.readUnsignedByte();
+        if(length > 0){
+          entry.digest = new byte[length];
+          data.readFully(entry.digest);
+        }
+        archive.add(entry);
+      }
+      index.add(archive);
+    }
+    return index;
+  }
+
+  /**
+   * Writes this index to the supplied stream.
+   *
+   * @param out The OutputStream to write to.
+   */
+  public void write(OutputStream out)
+    throws IOException
+  {
+    DataOutputStream data =
+      new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(archives.size());
+    for(Iterator ii = archives.values().iterator(); ii.hasNext();){
+      Archive archive = (Archive)ii.next();
+      data.writeUTF(archive.getName());
+      data.writeInt(archive.entries.size());
+      for(Iterator jj = archive.entries.iterator(); jj.hasNext();){
+        Entry entry = (Entry)jj.next();
+        data.writeUTF(entry.path);
+        data.writeBoolean(entry.directory);
+        data.writeLong(entry.compressedSize);
+        data.writeLong(entry.size);
+        data.writeLong(entry.crc);
+        data.writeLong(entry.offset);
+        if(entry.digest != null){
+          data.writeByte(entry.digest.length);
+          data.write(entry.digest);
+        }else{
+          data.writeByte(0);
+        }
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * Builds the index for the supplied zip archive.
+   *
+   * @param file The zip archive.
+   * @param name The name (classpath resource) the archive is stored under.
+   * @return The Archive index.
+   */
+  public static Archive index(File file, String name)
+    throws IOException
+  {
+    MessageDigest digest = null;
+    try{
+      digest = MessageDigest.getInstance(DIGEST);
+    }catch(NoSuchAlgorithmException nsae){
+      // digests are optional
+    }
+
+    Map offsets = readOffsets(file);
+    Archive archive = new Archive(name);
+    ZipFile zip = new ZipFile(file);
+    try{
+      byte[] buffer = new byte[1024 * 64];
+      for(Enumeration ii = zip.entries(); ii.hasMoreElements();){
+        ZipEntry zipEntry = (ZipEntry)ii.nextElement();
+        Entry entry = new Entry();
+        entry.path = zipEntry.getName();
+        entry.directory = zipEntry.isDirectory();
+        entry.compressedSize = zipEntry.getCompressedSize();
+        entry.size = zipEntry.getSize();
+        entry.crc = zipEntry.getCrc();
+        Long offset = (Long)offsets.get(entry.path);
+        entry.offset = offset != null ? offset.longValue() : -1;
+
+        if(digest != null && !entry.directory){
+          digest.reset();
+          InputStream in = zip.getInputStream(zipEntry);
+          try{
+            int read = 0;
+            while((read = in.read(buffer)) != -1){
+              digest.update(buffer, 0, read);
+            }
+          }finally{
+            IOUtils.closeQuietly(in);
+          }
+          entry.digest = digest.digest();
+        }
+        archive.add(entry);
+      }
+    }finally{
+      zip.close();
+    }
+    return archive;
+  }
+
+  /**
+   * Reads the local header offset of each entry from the zip archive's
+   * central directory.
+   *
+   * @param file The zip archive.
+   * @return Map of entry name to Long offset (empty if the central directory
+   * could not be read, ex. zip64 archives).
+   */
+  private static Map readOffsets(File file)
+    throws IOException
+  {
+    Map offsets = new HashMap();
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try{
+      // locate the end of central directory record (max comment is 64k).
+      long length = raf.length();
+      int tail = (int)Math.min(length, 0xffff + 22);
+      byte[] buffer = new byte[tail];
+      raf.seek(length - tail);
+      raf.readFully(buffer);
+
+      int eocd = -1;
+      for(int ii = tail - 22; ii >= 0; ii--){
+        if(readInt(buffer, ii) == 0x06054b50){
+          eocd = ii;
+          break;
+        }
+      }
+      if(eocd == -1){
+        return offsets;
+      }
+
+      long size = readInt(buffer, eocd + 12) & 0xffffffffL;
+      long start = readInt(buffer, eocd + 16) & 0xffffffffL;
+      if(start + size > length){
+        return offsets;
+      }
+
+      byte[] dir = new byte[(int)size];
+      raf.seek(start);
+      raf.readFully(dir);
+
+      int position = 0;
+      while(position + 46 <= dir.length &&
+          readInt(dir, position) == 0x02014b50)
+      {
+        int nameLength = readShort(dir, position + 28);
+        int extraLength = readShort(dir, position + 30);
+        int commentLength = readShort(dir, position + 32);
+        long offset = readInt(dir, position + 42) & 0xffffffffL;
+        String name = new String(dir, position + 46, nameLength, "UTF-8");
+        offsets.put(name, new Long(offset));
+        position += 46 + nameLength + extraLength + commentLength;
+      }
+    }finally{
+      raf.close();
+    }
+    return offsets;
+  }
+
+  private static int readShort(byte[] buffer, int offset)
+  {
+    return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+  }
+
+  private static int readInt(byte[] buffer, int offset)
+  {
+    return readShort(buffer, offset) | (readShort(buffer, offset + 2) << 16);
+  }
+
+  /**
+   * Adds the supplied archive to this index.
+   *
+   * @param archive The archive.
+   */
+  public void add(Archive archive)
+  {
+    archives.put(archive.getName(), archive);
+  }
+
+  /**
+   * Gets the names of all archives in this index.
+   *
+   * @return Array of archive names.
+   */
+  public String[] getArchiveNames()
+  {
+    return (String[])archives.keySet().toArray(new String[archives.size()]);
+  }
+
+  /**
+   * Gets the index of the archive stored under the supplied name.
+   *
+   * @param name The archive name (classpath resource).
+   * @return The Archive or null if not found.
+   */
+  public Archive getArchive(String name)
+  {
+    Archive archive = (Archive)archives.get(name);
+    if(archive == null && name != null){
+      // allow lookups with or without the leading '/'
+      archive = (Archive)archives.get(
+          name.startsWith("/") ? name.substring(1) : "/" + name);
+    }
+    return archive;
+  }
+
+  /**
+   * Gets the total uncompressed size of all archives in this index.
+   *
+   * @return The total size in bytes.
+   */
+  public long getSize()
+  {
+    long size = 0;
+    for(Iterator ii = archives.values().iterator(); ii.hasNext();){
+      size += ((Archive)ii.next()).getSize();
+    }
+    return size;
+  }
+
+  /**
+   * Index of a single payload archive.
+   */
+  public static class Archive
+  {
+    private String name;
+    private List entries = new ArrayList();
+    private Map entriesByPath = new HashMap();
+    private long size;
+    private long compressedSize;
+    private int fileCount;
+
+    /**
+     * Constructs a new empty archive index.
+     *
+     * @param name The name (classpath resource) of the archive.
+     */
+    public Archive(String name)
+    {
+      this.name = name;
+    }
+
+    /**
+     * Adds the supplied entry.
+     *
+     * @param entry The entry.
+     */
+    void add(Entry entry)
+    {
+      entries.add(entry);
+      entriesByPath.put(entry.path, entry);
+      if(!entry.directory){
+        fileCount++;
+        size += Math.max(entry.size, 0);
+        compressedSize += Math.max(entry.compressedSize, 0);
+      }
+    }
+
+    /**
+     * Gets the name (classpath resource) of this archive.
+     *
+     * @return The name.
+     */
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * Gets all entries, in archive order.
+     *
+     * @return Unmodifiable list of Entry.
+     */
+    public List getEntries()
+    {
+      return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Gets the entry for the supplied path.
+     *
+     * @param path The entry path within the archive.
+     * @return The Entry or null if not found.
+     */
+    public Entry getEntry(String path)
+    {
+      return (Entry)entriesByPath.get(path);
+    }
+
+    /**
+     * Gets the total number of entries (files and directories).
+     *
+     * @return The entry count.
+     */
+    public int getEntryCount()
+    {
+      return entries.size();
+    }
+
+    /**
+     * Gets the number of file (non directory) entries.
+     *
+     * @return The file count.
+     */
+    public int getFileCount()
+    {
+      return fileCount;
+    }
+
+    /**
+     * Gets the total uncompressed size of all entries.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize()
+    {
+      return size;
+    }
+
+    /**
+     * Gets the total compressed size of all entries.
+     *
+     * @return The size in bytes.
+     */
+    public long getCompressedSize()
+    {
+      return compressedSize;
+    }
+  }
+
+  /**
+   * Index information for a single archive entry.
+   */
+  public static class Entry
+  {
+    private String path;
+    private boolean directory;
+    private long compressedSize = -1;
+    private long size = -1;
+    private long crc = -1;
+    private long offset = -1;
+    private byte[] digest;
+
+    /**
+     * Gets the path of this entry within the archive.
+     *
+     * @return The path.
+     */
+    public String getPath()
+    {
+      return path;
+    }
+
+    /**
+     * Determines if this entry is a directory.
+     *
+     * @return true if a directory, false otherwise.
+     */
+    public boolean isDirectory()
+    {
+      return directory;
+    }
+
+    /**
+     * Gets the compressed size of this entry.
+     *
+     * @return The compressed size or -1 if unknown.
+     */
+    public long getCompressedSize()
+    {
+      return compressedSize;
+    }
+
+    /**
+     * Gets the uncompressed size of this entry.
+     *
+     * @return The size or -1 if unknown.
+     */
+    public long getSize()
+    {
+      return size;
+    }
+
+    /**
+     * Gets the CRC-32 of this entry's uncompressed contents.
+     *
+     * @return The CRC or -1 if unknown.
+     */
+    public long getCrc()
+    {
+      return crc;
+    }
+
+    /**
+     * Gets the offset of this entry's local header within the archive.
+     *
+     * @return The offset or -1 if unknown.
+     */
+    public long getOffset()
+    {
+      return offset;
+    }
+
+    /**
+     * Gets the SHA-256 digest of this entry's uncompressed contents.
+     *
+     * @return The digest or null if not available.
+     */
+    public byte[] getDigest()
+    {
+      return digest;
+    }
+  }
+}
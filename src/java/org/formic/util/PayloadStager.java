@@ -0,0 +1,345 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import org.formic.Installer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Speculatively extracts payload archives into a staging directory under the
+ * installer's temp directory while the user is still working through the
+ * wizard, so that the install itself only needs to move the staged files into
+ * place.
+ * <p/>
+ * Staging is opt-in, enabled by listing the archive resources in the
+ * <code>formic.stage</code> installer property.  If the install is canceled
+ * the staged files are removed along with the rest of the installer's temp
+ * directory.
+ * <p/>
+ * Since the install location is not yet known while staging, files are
+ * staged under the temp directory.  When that resides on a different file
+ * system than the install location the files can't be renamed into place
+ * and are copied instead, which reduces, but doesn't eliminate, the time
+ * saved.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class PayloadStager
+{
+  private static final Logger logger =
+    LoggerFactory.getLogger(PayloadStager.class);
+
+  private static Map stages = new HashMap();
+  private static int count;
+
+  /**
+   * Starts staging the supplied archive resource in the background.
+   *
+   * @param resource The archive resource.
+   */
+  public static synchronized void stage(String resource)
+  {
+    if(stages.containsKey(resource)){
+      return;
+    }
+
+    Stage stage = new Stage(
+        resource, Installer.tempDir("staging/" + (++count)));
+    stages.put(resource, stage);
+
+    Thread thread = new Thread(stage, "stage-" + count);
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Determines if the supplied resource is being, or has been, staged.
+   *
+   * @param resource The archive resource.
+   * @return true if staged, false otherwise.
+   */
+  public static synchronized boolean isStaged(String resource)
+  {
+    return stages.containsKey(resource);
+  }
+
+  /**
+   * Moves the staged files of the supplied archive into the destination
+   * directory, waiting for staging to complete if necessary.  Files are
+   * renamed into place when possible, otherwise copied (ex. when the temp
+   * directory is on a different file system).
+   *
+   * @param resource The archive resource.
+   * @param dest The directory to move the files to.
+   * @param excluded Optional list of path prefixes to leave out.
+   * @return true if the archive was committed, false if it was not staged
+   * or staging failed, in which case it must be extracted normally.
+   */
+  public static boolean commit(String resource, File dest, List excluded)
+    throws IOException
+  {
+    Stage stage = null;
+    synchronized(PayloadStager.class){
+      stage = (Stage)stages.remove(resource);
+    }
+    if(stage == null){
+      return false;
+    }
+
+    try{
+      if(!stage.waitFor()){
+        logger.warn("Staging of '" + resource + "' failed.", stage.error);
+        return false;
+      }
+      move(stage.dir, dest, "", excluded);
+      return true;
+    }catch(InterruptedException ie){
+      // the stage may still be writing, so stop it before deleting its files.
+      stage.cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted waiting for staging of '" + resource + "'");
+    }finally{
+      delete(stage.dir);
+    }
+  }
+
+  /**
+   * Recursively moves the contents of one directory to another.
+   *
+   * @param from The directory to move from.
+   * @param to The directory to move to.
+   * @param path The path of the from dir relative to the staging root.
+   * @param excluded Optional list of path prefixes to leave out.
+   */
+  private static void move(File from, File to, String path, List excluded)
+    throws IOException
+  {
+    File[] files = from.listFiles();
+    if(files == null){
+      return;
+    }
+
+    if(!to.exists()){
+      to.mkdirs();
+    }
+
+    for(int ii = 0; ii < files.length; ii++){
+      String name = path + files[ii].getName();
+      File target = new File(to, files[ii].getName());
+      if(files[ii].isDirectory()){
+        if(!isExcluded(name + '/', excluded)){
+          move(files[ii], target, name + '/', excluded);
+        }
+      }else if(!isExcluded(name, excluded)){
+        if(target.exists()){
+          target.delete();
+        }
+        if(!files[ii].renameTo(target)){
+          copy(files[ii], target);
+        }
+      }
+    }
+  }
+
+  /**
+   * Determines if the supplied path falls under one of the excluded prefixes.
+   *
+   * @param name The path.
+   * @param excluded List of excluded prefixes.
+   * @return true if excluded, false otherwise.
+   */
+  private static boolean isExcluded(String name, List excluded)
+  {
+    if(excluded != null){
+      for(int ii = 0; ii < excluded.size(); ii++){
+        if(name.startsWith((String)excluded.get(ii))){
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Copies a file (used when a rename crosses file systems).
+   *
+   * @param from The file to copy.
+   * @param to The file to copy to.
+   */
+  private static void copy(File from, File to)
+    throws IOException
+  {
+    InputStream in = null;
+    OutputStream out = null;
+    try{
+      in = new FileInputStream(from);
+      out = new FileOutputStream(to);
+      IOUtils.copy(in, out);
+      in.close();
+      out.close();
+    }finally{
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+    to.setLastModified(from.lastModified());
+  }
+
+  /**
+   * Deletes the supplied directory and its contents.
+   *
+   * @param dir The directory.
+   */
+  private static void delete(File dir)
+  {
+    File[] files = dir.listFiles();
+    if(files != null){
+      for(int ii = 0; ii < files.length; ii++){
+        if(files[ii].isDirectory()){
+          delete(files[ii]);
+        }else{
+          files[ii].delete();
+        }
+      }
+    }
+    dir.delete();
+  }
+
+  /**
+   * Background extraction of a single archive.
+   */
+  private static class Stage
+    implements Runnable
+  {
+    private String resource;
+    private File dir;
+    private boolean done;
+    private volatile boolean canceled;
+    private Exception error;
+
+    public Stage(String resource, File dir)
+    {
+      this.resource = resource;
+      this.dir = dir;
+    }
+
+    public void run()
+    {
+      long start = System.currentTimeMillis();
+      InputStream in = null;
+      try{
+        in = new StageInputStream(Extractor.openResource(resource));
+        Extractor.extractStream(in, dir, null);
+        in.close();
+        logger.info("Staged '" + resource + "' in " +
+            (System.currentTimeMillis() - start) + "ms");
+      }catch(Exception e){
+        error = e;
+      }finally{
+        IOUtils.closeQuietly(in);
+        synchronized(this){
+          done = true;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Waits for staging to complete.
+     *
+     * @return true if staging succeeded, false otherwise.
+     */
+    public synchronized boolean waitFor()
+      throws InterruptedException
+    {
+      while(!done){
+        wait();
+      }
+      return error == null;
+    }
+
+    /**
+     * Stops staging and waits for the staging thread to finish writing.
+     */
+    public synchronized void cancel()
+    {
+      canceled = true;
+      while(!done){
+        try{
+          wait();
+        }catch(InterruptedException ie){
+          // keep waiting, the caller restores the interrupt.
+        }
+      }
+    }
+
+    /**
+     * Archive stream which fails the extraction once staging is canceled.
+     */
+    private class StageInputStream
+      extends FilterInputStream
+    {
+      public StageInputStream(InputStream in)
+      {
+        super(in);
+      }
+
+      public int read()
+        throws IOException
+      {
+        checkCanceled();
+        return super.read();
+      }
+
+      public int read(byte[] b, int off, int len)
+        throws IOException
+      {
+        checkCanceled();
+        return super.read(b, off, len);
+      }
+
+      private void checkCanceled()
+        throws IOException
+      {
+        if(canceled){
+          throw new InterruptedIOException(
+              "Staging of '" + resource + "' canceled.");
+        }
+      }
+    }
+  }
+}
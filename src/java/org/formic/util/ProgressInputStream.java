@@ -0,0 +1,89 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream which records the number of bytes read to a
+ * {@link ByteProgress}.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ProgressInputStream
+  extends FilterInputStream
+{
+  private ByteProgress progress;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param in The InputStream to read from.
+   * @param progress The ByteProgress to record bytes read to.
+   */
+  public ProgressInputStream(InputStream in, ByteProgress progress)
+  {
+    super(in);
+    this.progress = progress;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see FilterInputStream#read()
+   */
+  public int read()
+    throws IOException
+  {
+    int b = super.read();
+    if(b != -1){
+      progress.add(1);
+    }
+    return b;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see FilterInputStream#read(byte[],int,int)
+   */
+  public int read(byte[] b, int off, int len)
+    throws IOException
+  {
+    int read = super.read(b, off, len);
+    if(read > 0){
+      progress.add(read);
+    }
+    return read;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see FilterInputStream#skip(long)
+   */
+  public long skip(long n)
+    throws IOException
+  {
+    long skipped = super.skip(n);
+    if(skipped > 0){
+      progress.add(skipped);
+    }
+    return skipped;
+  }
+}
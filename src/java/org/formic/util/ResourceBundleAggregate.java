@@ -18,32 +18,54 @@
  */
 package org.formic.util;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.List;
-import java.util.MissingResourceException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 /**
  * Aggregates multiple resource bundles together.
+ * <p/>
+ * The entries of each bundle are copied into a single map as the bundle is
+ * added, with bundles added first taking precedence, so a lookup is a single
+ * hash lookup regardless of the number of bundles or whether the key exists.
  *
  * @author Eric Van Dewoestine
  */
 public class ResourceBundleAggregate
   extends ResourceBundle
 {
-  private List bundles = new ArrayList();
-  private Enumeration keys;
+  private volatile Map values = new HashMap();
 
   /**
    * Add the supplied bundle to this aggregate.
    *
    * @param _bundle The bundle to add.
    */
-  public void addBundle(ResourceBundle _bundle)
+  public synchronized void addBundle(ResourceBundle _bundle)
   {
-    bundles.add(_bundle);
+    // copy on write so lookups never need to lock.
+    Map values = new HashMap(this.values);
+    for (Enumeration ii = _bundle.getKeys(); ii.hasMoreElements();){
+      String key = (String)ii.nextElement();
+      if(!values.containsKey(key)){
+        values.put(key, _bundle.getObject(key));
+      }
+    }
+    this.values = values;
+  }
+
+  /**
+   * Gets the value for the supplied key without raising an exception when no
+   * such key exists.
+   *
+   * @param _key The key.
+   * @return The value or null if not found.
+   */
+  public Object getValue(String _key)
+  {
+    return values.get(_key);
   }
 
   /**
@@ -52,16 +74,7 @@ public class ResourceBundleAggregate
    */
   protected Object handleGetObject(String _key)
   {
-    for (int ii = 0; ii < bundles.size(); ii++){
-      ResourceBundle bundle = (ResourceBundle)bundles.get(ii);
-      try{
-        Object obj = bundle.getObject(_key);
-        return obj;
-      }catch(MissingResourceException mre){
-        // continue to next bundle.
-      }
-    }
-    return null;
+    return values.get(_key);
   }
 
   /**
@@ -70,14 +83,6 @@ public class ResourceBundleAggregate
    */
   public Enumeration getKeys()
   {
-    if(keys == null){
-      List keys = new ArrayList();
-      for (int ii = 0; ii < bundles.size(); ii++){
-        ResourceBundle bundle = (ResourceBundle)bundles.get(ii);
-        keys.addAll(Collections.list(bundle.getKeys()));
-      }
-      this.keys = Collections.enumeration(keys);
-    }
-    return this.keys;
+    return Collections.enumeration(values.keySet());
   }
 }
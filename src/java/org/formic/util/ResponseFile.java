@@ -0,0 +1,508 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the flat name / value files used for unattended installs
+ * (response files) and their results.
+ * <p/>
+ * Files whose name ends in <code>.json</code> (or, when reading, whose
+ * content starts with <code>{</code>) are treated as a json object, all other
+ * files as java properties.  Json support is limited to what a response file
+ * needs: nested objects are flattened into dotted names and scalar values are
+ * converted to strings.
+ * <pre>
+ *   {"installLocation": {"location": "/opt/app"}, "license.accept": true}
+ * </pre>
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ResponseFile
+{
+  private static final String JSON_EXT = ".json";
+  private static final String HEX = "0123456789abcdef";
+
+  // zip end of central directory record: signature and minimum length.
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int EOCD_LENGTH = 22;
+
+  /**
+   * Loads the names and values from the supplied file.
+   *
+   * @param file The file to load.
+   * @return Map of String names to String values, in file order for json files
+   * and sorted by name for properties files.
+   */
+  public static Map load(File file)
+    throws IOException
+  {
+    byte[] bytes = read(file);
+    if(isJson(file) || startsWithBrace(bytes)){
+      Map values = new LinkedHashMap();
+      new JsonParser(new String(bytes, "UTF-8")).parse(values);
+      return values;
+    }
+
+    Properties properties = new Properties();
+    properties.load(new ByteArrayInputStream(bytes));
+    return new TreeMap(properties);
+  }
+
+  /**
+   * Writes the supplied names and values to the supplied file, in the map's
+   * iteration order, replacing any existing content.
+   *
+   * @param values Map of names to values (values are written using their
+   * string representation and null values are skipped).
+   * @param file The file to write.
+   */
+  public static void store(Map values, File file)
+    throws IOException
+  {
+    boolean json = isJson(file);
+    Writer writer = new OutputStreamWriter(
+        new FileOutputStream(file), json ? "UTF-8" : "ISO-8859-1");
+    try{
+      if(json){
+        writer.write("{");
+      }
+      String separator = "";
+      for (Iterator ii = values.entrySet().iterator(); ii.hasNext();){
+        Map.Entry entry = (Map.Entry)ii.next();
+        if(entry.getValue() == null){
+          continue;
+        }
+        String name = entry.getKey().toString();
+        String value = entry.getValue().toString();
+        if(json){
+          writer.write(separator + "\n  " +
+              quote(name) + ": " + quote(value));
+          separator = ",";
+        }else{
+          writer.write(escape(name, true) + '=' + escape(value, false) + '\n');
+        }
+      }
+      if(json){
+        writer.write("\n}\n");
+      }
+    }finally{
+      writer.close();
+    }
+  }
+
+  /**
+   * Determines if the supplied file is a json file based on its name.
+   *
+   * @param file The file.
+   * @return true if json, false otherwise.
+   */
+  public static boolean isJson(File file)
+  {
+    return file.getName().toLowerCase().endsWith(JSON_EXT);
+  }
+
+  /**
+   * Computes a checksum of the supplied archive (ex. the installer jar) used
+   * to verify that a response file is replayed against the installer it was
+   * recorded with.
+   * <p/>
+   * For zip archives only the central directory is digested: it holds the
+   * name, size, and crc of every entry, so any change to the archive's
+   * content changes the checksum without reading the (potentially large)
+   * payloads.  Other files are digested in full.
+   *
+   * @param file The archive.
+   * @return The hex encoded checksum.
+   */
+  public static String checksum(File file)
+    throws IOException
+  {
+    MessageDigest digest;
+    try{
+      digest = MessageDigest.getInstance("SHA-1");
+    }catch(NoSuchAlgorithmException nsae){
+      throw new RuntimeException(nsae);
+    }
+
+    RandomAccessFile archive = new RandomAccessFile(file, "r");
+    try{
+      long length = archive.length();
+      int tail = (int)Math.min(length, 0xffff + EOCD_LENGTH);
+      byte[] buffer = new byte[tail];
+      archive.seek(length - tail);
+      archive.readFully(buffer);
+
+      // the end record is followed by a comment of at most 64k.
+      for (int ii = tail - EOCD_LENGTH; ii >= 0; ii--){
+        if(readInt(buffer, ii) == EOCD_SIGNATURE){
+          long size = readInt(buffer, ii + 12) & 0xffffffffL;
+          long offset = readInt(buffer, ii + 16) & 0xffffffffL;
+          if(offset + size > length - tail + ii){
+            // zip64 or corrupt, digest everything instead.
+            break;
+          }
+          byte[] directory = new byte[(int)size];
+          archive.seek(offset);
+          archive.readFully(directory);
+          digest.update(directory);
+          digest.update(buffer, ii, tail - ii);
+          return hex(digest.digest());
+        }
+      }
+
+      archive.seek(0);
+      byte[] bytes = new byte[64 * 1024];
+      int read;
+      while((read = archive.read(bytes)) != -1){
+        digest.update(bytes, 0, read);
+      }
+      return hex(digest.digest());
+    }finally{
+      archive.close();
+    }
+  }
+
+  private static int readInt(byte[] bytes, int offset)
+  {
+    return (bytes[offset] & 0xff) |
+      ((bytes[offset + 1] & 0xff) << 8) |
+      ((bytes[offset + 2] & 0xff) << 16) |
+      ((bytes[offset + 3] & 0xff) << 24);
+  }
+
+  private static String hex(byte[] bytes)
+  {
+    StringBuffer buffer = new StringBuffer(bytes.length * 2);
+    for (int ii = 0; ii < bytes.length; ii++){
+      buffer.append(HEX.charAt((bytes[ii] >> 4) & 0xf))
+        .append(HEX.charAt(bytes[ii] & 0xf));
+    }
+    return buffer.toString();
+  }
+
+  private static byte[] read(File file)
+    throws IOException
+  {
+    InputStream in = new FileInputStream(file);
+    try{
+      byte[] bytes = new byte[(int)file.length()];
+      int offset = 0;
+      while(offset < bytes.length){
+        int read = in.read(bytes, offset, bytes.length - offset);
+        if(read == -1){
+          break;
+        }
+        offset += read;
+      }
+      return bytes;
+    }finally{
+      in.close();
+    }
+  }
+
+  private static boolean startsWithBrace(byte[] bytes)
+  {
+    for (int ii = 0; ii < bytes.length; ii++){
+      if(!Character.isWhitespace((char)bytes[ii])){
+        return bytes[ii] == '{';
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Escapes the supplied string for use as a properties file key or value.
+   */
+  private static String escape(String string, boolean key)
+  {
+    StringBuffer buffer = new StringBuffer(string.length());
+    for (int ii = 0; ii < string.length(); ii++){
+      char c = string.charAt(ii);
+      switch(c){
+        case '\\':
+          buffer.append("\\\\");
+          break;
+        case '\n':
+          buffer.append("\\n");
+          break;
+        case '\r':
+          buffer.append("\\r");
+          break;
+        case '\t':
+          buffer.append("\\t");
+          break;
+        case ' ':
+          buffer.append(key || ii == 0 ? "\\ " : " ");
+          break;
+        case '=':
+        case ':':
+        case '#':
+        case '!':
+          buffer.append('\\').append(c);
+          break;
+        default:
+          if(c < 0x20 || c > 0x7e){
+            unicode(buffer, c);
+          }else{
+            buffer.append(c);
+          }
+      }
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Quotes the supplied string as a json string.
+   */
+  private static String quote(String string)
+  {
+    StringBuffer buffer = new StringBuffer(string.length() + 2);
+    buffer.append('"');
+    for (int ii = 0; ii < string.length(); ii++){
+      char c = string.charAt(ii);
+      switch(c){
+        case '"':
+          buffer.append("\\\"");
+          break;
+        case '\\':
+          buffer.append("\\\\");
+          break;
+        case '\n':
+          buffer.append("\\n");
+          break;
+        case '\r':
+          buffer.append("\\r");
+          break;
+        case '\t':
+          buffer.append("\\t");
+          break;
+        default:
+          if(c < 0x20){
+            unicode(buffer, c);
+          }else{
+            buffer.append(c);
+          }
+      }
+    }
+    return buffer.append('"').toString();
+  }
+
+  private static void unicode(StringBuffer buffer, char c)
+  {
+    buffer.append("\\u")
+      .append(HEX.charAt((c >> 12) & 0xf))
+      .append(HEX.charAt((c >> 8) & 0xf))
+      .append(HEX.charAt((c >> 4) & 0xf))
+      .append(HEX.charAt(c & 0xf));
+  }
+
+  /**
+   * Minimal parser which flattens a json object into dotted names.
+   */
+  private static class JsonParser
+  {
+    private String text;
+    private int pos;
+
+    public JsonParser(String text)
+    {
+      this.text = text;
+    }
+
+    /**
+     * Parses the json object, adding its values to the supplied map.
+     *
+     * @param values The map to populate.
+     */
+    public void parse(Map values)
+      throws IOException
+    {
+      skipWhitespace();
+      parseObject(null, values);
+      skipWhitespace();
+      if(pos < text.length()){
+        throw error("unexpected content after object");
+      }
+    }
+
+    private void parseObject(String prefix, Map values)
+      throws IOException
+    {
+      expect('{');
+      skipWhitespace();
+      if(peek() == '}'){
+        pos++;
+        return;
+      }
+      while(true){
+        skipWhitespace();
+        String name = parseString();
+        if(prefix != null){
+          name = prefix + '.' + name;
+        }
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        parseValue(name, values);
+        skipWhitespace();
+        char c = next();
+        if(c == '}'){
+          return;
+        }
+        if(c != ','){
+          pos--;
+          throw error("expected ',' or '}'");
+        }
+      }
+    }
+
+    private void parseValue(String name, Map values)
+      throws IOException
+    {
+      char c = peek();
+      if(c == '{'){
+        parseObject(name, values);
+      }else if(c == '"'){
+        values.put(name, parseString());
+      }else if(c == '['){
+        throw error("arrays are not supported");
+      }else{
+        int start = pos;
+        while(pos < text.length() && "},] \t\r\n".indexOf(text.charAt(pos)) == -1){
+          pos++;
+        }
+        String literal = text.substring(start, pos);
+        if(literal.length() == 0){
+          throw error("expected value");
+        }
+        // null leaves the value unset.
+        if(!"null".equals(literal)){
+          values.put(name, literal);
+        }
+      }
+    }
+
+    private String parseString()
+      throws IOException
+    {
+      expect('"');
+      StringBuffer buffer = new StringBuffer();
+      while(true){
+        char c = next();
+        if(c == '"'){
+          return buffer.toString();
+        }
+        if(c != '\\'){
+          buffer.append(c);
+          continue;
+        }
+        c = next();
+        switch(c){
+          case 'b':
+            buffer.append('\b');
+            break;
+          case 'f':
+            buffer.append('\f');
+            break;
+          case 'n':
+            buffer.append('\n');
+            break;
+          case 'r':
+            buffer.append('\r');
+            break;
+          case 't':
+            buffer.append('\t');
+            break;
+          case 'u':
+            if(pos + 4 > text.length()){
+              throw error("invalid unicode escape");
+            }
+            try{
+              buffer.append(
+                  (char)Integer.parseInt(text.substring(pos, pos + 4), 16));
+            }catch(NumberFormatException nfe){
+              throw error("invalid unicode escape");
+            }
+            pos += 4;
+            break;
+          default:
+            buffer.append(c);
+        }
+      }
+    }
+
+    private void skipWhitespace()
+    {
+      while(pos < text.length() && Character.isWhitespace(text.charAt(pos))){
+        pos++;
+      }
+    }
+
+    private char peek()
+      throws IOException
+    {
+      if(pos >= text.length()){
+        throw error("unexpected end of content");
+      }
+      return text.charAt(pos);
+    }
+
+    private char next()
+      throws IOException
+    {
+      char c = peek();
+      pos++;
+      return c;
+    }
+
+    private void expect(char c)
+      throws IOException
+    {
+      if(peek() != c){
+        throw error("expected '" + c + "'");
+      }
+      pos++;
+    }
+
+    private IOException error(String message)
+    {
+      return new IOException(
+          "Invalid json at offset " + pos + ": " + message + '.');
+    }
+  }
+}
@@ -19,24 +19,37 @@
 package org.formic.util;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.velocity.VelocityContext;
 
-import org.apache.velocity.app.Velocity;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+
+import org.apache.velocity.runtime.RuntimeSingleton;
+
+import org.apache.velocity.runtime.parser.node.SimpleNode;
 
 /**
  * Utility class for evaluating templates.
+ * <p/>
+ * Templates evaluated by name (ex. a resource path) are parsed once and the
+ * resulting syntax tree cached, so evaluating them again only pays for
+ * rendering.  Templates supplied only as a string or stream are parsed on
+ * each call, so that callers evaluating generated text don't grow the cache.
  *
  * @author Eric Van Dewoestine
  */
 public class TemplateUtils
 {
+  private static final Map templates = new HashMap();
+
   /**
    * Evaluates the template supplied w/ the specified values.
    *
@@ -47,7 +60,7 @@ public class TemplateUtils
   public static String evaluate(String template, Map values)
     throws Exception
   {
-    return evaluate(new ByteArrayInputStream(template.getBytes()), values);
+    return render(parse(new StringReader(template)), values);
   }
 
   /**
@@ -61,14 +74,98 @@ public class TemplateUtils
   public static String evaluate(InputStream template, Map values)
     throws Exception
   {
-    BufferedReader reader = null;
+    return render(parse(template), values);
+  }
+
+  /**
+   * Evaluates the template cached under the supplied name, reading it from
+   * the supplied stream if it has not been cached yet.
+   *
+   * @param name The name to cache the template under (ex. resource path).
+   * @param template The template, which may be null if already cached.
+   * @param values The template values.
+   * @return The evaluation result.
+   */
+  public static String evaluate(String name, InputStream template, Map values)
+    throws Exception
+  {
+    SimpleNode node = getCached(name);
+    if(node == null){
+      node = cache(name, parse(template));
+    }
+    return render(node, values);
+  }
+
+  /**
+   * Determines if a parsed template is cached under the supplied name.
+   *
+   * @param name The template name.
+   * @return true if cached, false otherwise.
+   */
+  public static boolean isCached(String name)
+  {
+    return getCached(name) != null;
+  }
+
+  /**
+   * Clears all cached templates.
+   */
+  public static void clearCache()
+  {
+    synchronized(templates){
+      templates.clear();
+    }
+  }
+
+  private static SimpleNode getCached(String name)
+  {
+    synchronized(templates){
+      return (SimpleNode)templates.get(name);
+    }
+  }
+
+  private static SimpleNode cache(String name, SimpleNode node)
+  {
+    synchronized(templates){
+      templates.put(name, node);
+    }
+    return node;
+  }
+
+  private static SimpleNode parse(InputStream template)
+  {
+    return parse(new BufferedReader(new InputStreamReader(template)));
+  }
+
+  private static SimpleNode parse(Reader reader)
+  {
+    try{
+      return RuntimeSingleton.parse(reader, TemplateUtils.class.getName());
+    }catch(Exception e){
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Renders the supplied parsed template, mirroring what
+   * Velocity.evaluate does after parsing.
+   */
+  private static String render(SimpleNode node, Map values)
+  {
     StringWriter writer = new StringWriter();
-    VelocityContext context = new VelocityContext(values);
+    InternalContextAdapterImpl context =
+      new InternalContextAdapterImpl(new VelocityContext(values));
+    context.pushCurrentTemplateName(TemplateUtils.class.getName());
     try{
-      reader = new BufferedReader(new InputStreamReader(template));
-      Velocity.evaluate(context, writer, TemplateUtils.class.getName(), reader);
+      // nodes keep per render state, so renders of one tree can't overlap.
+      synchronized(node){
+        node.init(context, RuntimeSingleton.getRuntimeServices());
+        node.render(context, writer);
+      }
     }catch(Exception e){
       throw new RuntimeException(e);
+    }finally{
+      context.popCurrentTemplateName();
     }
 
     return writer.toString();
@@ -0,0 +1,452 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Replaces any number of tokens in text or files in a single pass.
+ * <p/>
+ * The tokens are compiled into an Aho-Corasick automaton, so the cost of a
+ * scan depends on the length of the input and not on the number of tokens.
+ * Where matches overlap, the one starting first wins, and among those
+ * starting at the same position the longest wins.  Replacement values are
+ * not themselves scanned for tokens.
+ * <p/>
+ * Files without any matches are left untouched.  Other files are written to
+ * a temporary file alongside them which is then renamed over the original.
+ * A replacer may be shared by any number of threads.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class TokenReplacer
+{
+  private State root = new State(0);
+
+  /**
+   * Constructs a new replacer.
+   *
+   * @param tokens Map of token to the value to replace it with.
+   */
+  public TokenReplacer(Map tokens)
+  {
+    for (Iterator ii = tokens.entrySet().iterator(); ii.hasNext();){
+      Map.Entry entry = (Map.Entry)ii.next();
+      String token = (String)entry.getKey();
+      if(token == null || token.length() == 0){
+        throw new IllegalArgumentException("Tokens must not be empty.");
+      }
+      Object value = entry.getValue();
+      add(token, value != null ? value.toString() : "");
+    }
+    link();
+  }
+
+  /**
+   * Replaces all tokens in the supplied text.
+   *
+   * @param text The text.
+   * @return The resulting text, or the original instance if no tokens were
+   * found.
+   */
+  public String replace(String text)
+  {
+    char[] chars = text.toCharArray();
+    State[] matches = scan(chars, chars.length);
+    if(matches == null){
+      return text;
+    }
+    StringBuffer result = new StringBuffer(chars.length);
+    append(chars, chars.length, matches, result);
+    return result.toString();
+  }
+
+  /**
+   * Replaces all tokens in the supplied file.
+   *
+   * @param file The file.
+   * @param encoding The file encoding, or null for the platform default.
+   * @return true if the file was modified, false if no tokens were found.
+   */
+  public boolean replace(File file, String encoding)
+    throws IOException
+  {
+    char[] chars;
+    int length;
+    Reader reader = null;
+    try{
+      reader = encoding != null ?
+        new InputStreamReader(new FileInputStream(file), encoding) :
+        new InputStreamReader(new FileInputStream(file));
+      chars = new char[(int)Math.max(file.length(), 16)];
+      length = 0;
+      int read;
+      while((read = reader.read(chars, length, chars.length - length)) != -1){
+        length += read;
+        if(length == chars.length){
+          char[] grown = new char[chars.length * 2];
+          System.arraycopy(chars, 0, grown, 0, length);
+          chars = grown;
+        }
+      }
+    }finally{
+      IOUtils.closeQuietly(reader);
+    }
+
+    State[] matches = scan(chars, length);
+    if(matches == null){
+      return false;
+    }
+
+    File temp = File.createTempFile(
+        "replace", ".tmp", file.getAbsoluteFile().getParentFile());
+    boolean written = false;
+    Writer writer = null;
+    try{
+      writer = encoding != null ?
+        new OutputStreamWriter(new FileOutputStream(temp), encoding) :
+        new OutputStreamWriter(new FileOutputStream(temp));
+      StringBuffer result = new StringBuffer(length);
+      append(chars, length, matches, result);
+      writer.write(result.toString());
+      writer.close();
+      writer = null;
+      written = true;
+    }finally{
+      IOUtils.closeQuietly(writer);
+      if(!written){
+        temp.delete();
+      }
+    }
+    replaceFile(temp, file);
+    return true;
+  }
+
+  /**
+   * Renames the supplied temporary file, written alongside the target file,
+   * over the target.
+   * <p/>
+   * renameTo won't replace an existing file on all platforms, so if the
+   * rename fails the original is moved aside and restored should the
+   * temporary file still be unable to take its place.  The temporary file is
+   * deleted on failure unless the original could not be restored, in which
+   * case both are kept and named in the error.
+   *
+   * @param temp The temporary file.
+   * @param file The file to replace.
+   */
+  public static void replaceFile(File temp, File file)
+    throws IOException
+  {
+    boolean keep = false;
+    try{
+      if(temp.renameTo(file)){
+        return;
+      }
+
+      File backup = File.createTempFile(
+          "replace", ".bak", file.getAbsoluteFile().getParentFile());
+      if(!backup.delete() || !file.renameTo(backup)){
+        backup.delete();
+        throw new IOException("Unable to replace file: " + file);
+      }
+      if(!temp.renameTo(file)){
+        if(!backup.renameTo(file)){
+          // the original only remains as the backup, so keep the result as
+          // well.
+          keep = true;
+          throw new IOException("Unable to replace file: " + file +
+              " (original moved to " + backup + ", result left in " +
+              temp + ")");
+        }
+        throw new IOException("Unable to replace file: " + file);
+      }
+      backup.delete();
+    }finally{
+      if(!keep){
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Replaces all tokens in the supplied files, using up to the specified
+   * number of threads.
+   *
+   * @param files The files.
+   * @param encoding The file encoding, or null for the platform default.
+   * @param threads The number of threads, or a value less than 1 to use one
+   * per available processor.
+   * @return The number of files modified.
+   */
+  public int replace(File[] files, String encoding, int threads)
+    throws IOException
+  {
+    if(threads < 1){
+      threads = WorkerPool.defaultSize();
+    }
+    threads = Math.min(threads, files.length);
+
+    Replacement replacement = new Replacement(files, encoding);
+    if(threads <= 1){
+      replacement.run();
+    }else{
+      WorkerPool pool = new WorkerPool("replace", threads);
+      for(int ii = 0; ii < threads; ii++){
+        pool.execute(replacement);
+      }
+      pool.shutdown();
+      try{
+        pool.join();
+      }catch(InterruptedException ie){
+        Thread.currentThread().interrupt();
+        replacement.failed(new InterruptedIOException(ie.getMessage()));
+      }
+    }
+    replacement.checkError();
+    return replacement.modified;
+  }
+
+  /**
+   * Scans the supplied characters for tokens.
+   *
+   * @param chars The characters.
+   * @param length The number of characters to scan.
+   * @return Array indexed by start position holding the state of the longest
+   * token starting there, or null if no tokens were found.
+   */
+  private State[] scan(char[] chars, int length)
+  {
+    State[] matches = null;
+    State state = root;
+    for(int ii = 0; ii < length; ii++){
+      char c = chars[ii];
+      State next;
+      while((next = state.get(c)) == null && state != root){
+        state = state.fail;
+      }
+      state = next != null ? next : root;
+
+      for(State match = state.value != null ? state : state.output;
+          match != null; match = match.output)
+      {
+        if(matches == null){
+          matches = new State[length];
+        }
+        int start = ii - match.depth + 1;
+        if(matches[start] == null || matches[start].depth < match.depth){
+          matches[start] = match;
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Appends the supplied characters to the result, replacing the leftmost
+   * longest non overlapping matches.
+   */
+  private void append(
+      char[] chars, int length, State[] matches, StringBuffer result)
+  {
+    int ii = 0;
+    while(ii < length){
+      State match = matches[ii];
+      if(match != null){
+        result.append(match.value);
+        ii += match.depth;
+      }else{
+        result.append(chars[ii++]);
+      }
+    }
+  }
+
+  private void add(String token, String value)
+  {
+    State state = root;
+    for(int ii = 0; ii < token.length(); ii++){
+      char c = token.charAt(ii);
+      State next = state.get(c);
+      if(next == null){
+        next = new State(ii + 1);
+        state.put(c, next);
+      }
+      state = next;
+    }
+    state.value = value;
+  }
+
+  /**
+   * Computes the failure and output links breadth first.
+   */
+  private void link()
+  {
+    LinkedList queue = new LinkedList();
+    for(Iterator ii = root.children().iterator(); ii.hasNext();){
+      State child = (State)ii.next();
+      child.fail = root;
+      queue.add(child);
+    }
+
+    while(queue.size() > 0){
+      State state = (State)queue.removeFirst();
+      for(Iterator ii = state.transitions().iterator(); ii.hasNext();){
+        Map.Entry entry = (Map.Entry)ii.next();
+        char c = ((Character)entry.getKey()).charValue();
+        State child = (State)entry.getValue();
+
+        State fail = state.fail;
+        while(fail.get(c) == null && fail != root){
+          fail = fail.fail;
+        }
+        State target = fail.get(c);
+        child.fail = target != null ? target : root;
+        child.output = child.fail.value != null ?
+          child.fail : child.fail.output;
+        queue.add(child);
+      }
+    }
+  }
+
+  /**
+   * A node of the token trie.
+   */
+  private static class State
+  {
+    private int depth;
+    private Map next;
+    private State fail;
+    private State output;
+    private String value;
+
+    public State(int depth)
+    {
+      this.depth = depth;
+    }
+
+    public State get(char c)
+    {
+      return next != null ? (State)next.get(new Character(c)) : null;
+    }
+
+    public void put(char c, State state)
+    {
+      if(next == null){
+        next = new HashMap();
+      }
+      next.put(new Character(c), state);
+    }
+
+    public List children()
+    {
+      return next != null ? new ArrayList(next.values()) : new ArrayList();
+    }
+
+    public List transitions()
+    {
+      return next != null ? new ArrayList(next.entrySet()) : new ArrayList();
+    }
+  }
+
+  /**
+   * Work shared by the worker threads, each of which repeatedly claims the
+   * next file to process until none remain or one fails.
+   */
+  private class Replacement
+    implements Runnable
+  {
+    private File[] files;
+    private String encoding;
+    private int next;
+    private int modified;
+    private Throwable error;
+
+    public Replacement(File[] files, String encoding)
+    {
+      this.files = files;
+      this.encoding = encoding;
+    }
+
+    public void run()
+    {
+      int index = -1;
+      while((index = claim()) != -1){
+        try{
+          if(replace(files[index], encoding)){
+            modified();
+          }
+        }catch(Throwable t){
+          // record any failure so that the file is never silently skipped.
+          failed(t);
+        }
+      }
+    }
+
+    private synchronized int claim()
+    {
+      if(error != null || next >= files.length){
+        return -1;
+      }
+      return next++;
+    }
+
+    private synchronized void modified()
+    {
+      modified++;
+    }
+
+    private synchronized void failed(Throwable t)
+    {
+      if(error == null){
+        error = t;
+      }
+    }
+
+    private synchronized void checkError()
+      throws IOException
+    {
+      if(error instanceof RuntimeException){
+        throw (RuntimeException)error;
+      }
+      if(error instanceof Error){
+        throw (Error)error;
+      }
+      if(error != null){
+        throw (IOException)error;
+      }
+    }
+  }
+}
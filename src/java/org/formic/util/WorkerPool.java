@@ -0,0 +1,219 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simple bounded pool of daemon worker threads used to run independent units
+ * of work (extracting archive entries, executing targets, etc.) concurrently.
+ * <p/>
+ * Threads are started lazily, up to the configured size, as work is queued.
+ * Once {@link #shutdown()} is called no further work is accepted and the
+ * workers exit after draining the queue.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class WorkerPool
+{
+  private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+  private String name;
+  private int size;
+  private LinkedList queue = new LinkedList();
+  private List workers = new ArrayList();
+  private int active;
+  private boolean shutdown;
+
+  /**
+   * Constructs a new pool.
+   *
+   * @param name The name used as the prefix of the worker thread names.
+   * @param size The maximum number of worker threads, or a value less than 1
+   * to use one worker per available processor.
+   */
+  public WorkerPool(String name, int size)
+  {
+    this.name = name;
+    this.size = size > 0 ? size : defaultSize();
+  }
+
+  /**
+   * Gets the default pool size (one worker per available processor).
+   *
+   * @return The default pool size.
+   */
+  public static int defaultSize()
+  {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Gets the maximum number of workers in this pool.
+   *
+   * @return The pool size.
+   */
+  public int getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Queues the supplied task for execution by one of the pool's workers.
+   *
+   * @param task The task to run.
+   */
+  public synchronized void execute(Runnable task)
+  {
+    if(shutdown){
+      throw new IllegalStateException("Worker pool '" + name + "' is shutdown.");
+    }
+
+    queue.addLast(task);
+    if(workers.size() < size && workers.size() - active < queue.size()){
+      Worker worker = new Worker(name + "-" + (workers.size() + 1));
+      workers.add(worker);
+      worker.start();
+    }
+    notify();
+  }
+
+  /**
+   * Stops accepting new tasks.  Queued tasks will still be run.
+   */
+  public synchronized void shutdown()
+  {
+    shutdown = true;
+    notifyAll();
+  }
+
+  /**
+   * Stops accepting new tasks and discards any tasks not yet started.
+   *
+   * @return List of the discarded tasks.
+   */
+  public synchronized List shutdownNow()
+  {
+    shutdown = true;
+    List pending = new ArrayList(queue);
+    queue.clear();
+    notifyAll();
+    return pending;
+  }
+
+  /**
+   * Blocks until all queued tasks have completed.
+   */
+  public synchronized void join()
+    throws InterruptedException
+  {
+    while(!queue.isEmpty() || active > 0){
+      wait();
+    }
+  }
+
+  /**
+   * Blocks until all queued tasks have completed or the timeout elapses.
+   *
+   * @param timeout The max number of milliseconds to wait.
+   * @return true if all tasks completed, false if the timeout elapsed first.
+   */
+  public synchronized boolean join(long timeout)
+    throws InterruptedException
+  {
+    long end = System.currentTimeMillis() + timeout;
+    while(!queue.isEmpty() || active > 0){
+      long remaining = end - System.currentTimeMillis();
+      if(remaining <= 0){
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  /**
+   * Gets the next task to run, blocking until one is available.
+   *
+   * @return The next task or null if the pool is shutdown and the queue is
+   * empty.
+   */
+  private synchronized Runnable next()
+    throws InterruptedException
+  {
+    while(queue.isEmpty()){
+      if(shutdown){
+        return null;
+      }
+      wait();
+    }
+    active++;
+    return (Runnable)queue.removeFirst();
+  }
+
+  /**
+   * Invoked by a worker when it has finished running a task.
+   */
+  private synchronized void done()
+  {
+    active--;
+    notifyAll();
+  }
+
+  /**
+   * Worker thread which runs queued tasks until the pool is shutdown.
+   */
+  private class Worker
+    extends Thread
+  {
+    public Worker(String name)
+    {
+      super(name);
+      setDaemon(true);
+    }
+
+    public void run()
+    {
+      try{
+        Runnable task = null;
+        while((task = next()) != null){
+          try{
+            task.run();
+          }catch(Throwable t){
+            logger.error("Error running task on " + getName(), t);
+          }finally{
+            done();
+          }
+        }
+      }catch(InterruptedException ie){
+        // exit
+      }finally{
+        synchronized(WorkerPool.this){
+          workers.remove(this);
+          WorkerPool.this.notifyAll();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import java.util.Properties;
+
+import org.formic.Installer;
+
+/**
+ * Creates a wizard step on first request from a resolved step constructor,
+ * so that steps on paths the user never visits are never constructed.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class StepFactory
+{
+  private Constructor constructor;
+  private String name;
+  private Properties properties;
+  private WizardStep step;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param constructor The step class constructor taking the step name and
+   * properties.
+   * @param name The step name.
+   * @param properties The step properties.
+   */
+  public StepFactory(
+      Constructor constructor, String name, Properties properties)
+  {
+    this.constructor = constructor;
+    this.name = name;
+    this.properties = properties;
+  }
+
+  /**
+   * Gets the name of the step.
+   *
+   * @return The step name.
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Gets the title of the step without creating it.
+   *
+   * @return The step's title.
+   */
+  public String getTitle()
+  {
+    return Installer.getString(name + ".title");
+  }
+
+  /**
+   * Gets the description of the step without creating it.
+   *
+   * @return The step's description.
+   */
+  public String getDescription()
+  {
+    return Installer.getString(name + ".description");
+  }
+
+  /**
+   * Determines if the step has been created.
+   *
+   * @return true if created, false otherwise.
+   */
+  public synchronized boolean isCreated()
+  {
+    return step != null;
+  }
+
+  /**
+   * Gets the step, creating it on the first call.
+   *
+   * @return The step.
+   */
+  public synchronized WizardStep getStep()
+  {
+    if(step == null){
+      step = newStep();
+    }
+    return step;
+  }
+
+  /**
+   * Constructs a new instance of the step.
+   *
+   * @return The step.
+   */
+  public WizardStep newStep()
+  {
+    try{
+      return (WizardStep)
+        constructor.newInstance(new Object[]{name, properties});
+    }catch(InvocationTargetException ite){
+      Throwable target = ite.getTargetException();
+      if(target instanceof IllegalArgumentException){
+        throw (IllegalArgumentException)target;
+      }
+      throw new RuntimeException(target);
+    }catch(RuntimeException re){
+      throw re;
+    }catch(Exception e){
+      throw new RuntimeException(
+          Installer.getString("step.error.loading", name), e);
+    }
+  }
+}
@@ -18,10 +18,10 @@
  */
 package org.formic.wizard;
 
+import java.io.File;
 import java.io.IOException;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 import java.util.HashMap;
 import java.util.List;
@@ -47,12 +47,13 @@ import org.formic.wizard.impl.console.ConsoleWizardStep;
 import org.formic.wizard.impl.gui.GuiWizard;
 import org.formic.wizard.impl.gui.GuiWizardStep;
 
+import org.formic.wizard.impl.headless.HeadlessWizard;
+
 import org.formic.wizard.impl.models.BranchingPath;
 import org.formic.wizard.impl.models.MultiPathModel;
 import org.formic.wizard.impl.models.SimplePath;
 
-import org.formic.wizard.step.ConsoleStep;
-import org.formic.wizard.step.GuiStep;
+import org.formic.wizard.step.HeadlessStep;
 
 import org.pietschy.wizard.WizardModel;
 
@@ -66,6 +67,7 @@ import org.pietschy.wizard.models.Condition;
 public class WizardBuilder
 {
   private static Properties steps = new Properties();
+  private static Map constructors = new HashMap();
   private static boolean consoleMode;
 
   /**
@@ -103,11 +105,7 @@ public class WizardBuilder
     }
 
     Path main = (Path)_paths.get(0);
-    Map paths = new HashMap();
-    for (int ii = 1; ii < _paths.size(); ii++){
-      Path path = (Path)_paths.get(ii);
-      paths.put(path.getName(), path);
-    }
+    Map paths = getPaths(_paths);
 
     org.pietschy.wizard.models.Path mainPath = buildPath(main, paths);
 
@@ -128,6 +126,45 @@ public class WizardBuilder
     return wizard;
   }
 
+  /**
+   * Builds a wizard which runs unattended from the supplied list of paths,
+   * using the values of the supplied response file.
+   * <p/>
+   * The first path in the list is expected to be the main path.
+   *
+   * @param _paths The list of paths.
+   * @param _response The response file.
+   * @param _result The file to write the result to, or null for none.
+   * @return The HeadlessWizard.
+   */
+  public static HeadlessWizard buildHeadless(
+      List _paths, File _response, File _result)
+  {
+    if(_paths.size() == 0){
+      throw new BuildException("No paths defined.");
+    }
+
+    return new HeadlessWizard(
+        (Path)_paths.get(0), getPaths(_paths), _response, _result);
+  }
+
+  /**
+   * Gets a map of path name to path for all but the first (main) path in the
+   * supplied list.
+   *
+   * @param _paths The list of paths.
+   * @return The map.
+   */
+  private static Map getPaths(List _paths)
+  {
+    Map paths = new HashMap();
+    for (int ii = 1; ii < _paths.size(); ii++){
+      Path path = (Path)_paths.get(ii);
+      paths.put(path.getName(), path);
+    }
+    return paths;
+  }
+
   /**
    * Builds a wizard path from the supplied ant path.
    *
@@ -149,7 +186,6 @@ public class WizardBuilder
         Log.debug("Adding step '" + step.getName() +
             "' to path '" + _path.getName() + "'");
         SimplePath simplePath = new SimplePath(step.getName(),
-            (org.pietschy.wizard.WizardStep)
             getStep(step.getName(), step.getProperties()));
         if(path != null){
           Log.debug("Setting next path for '" + getPathName(simplePath) +
@@ -193,47 +229,78 @@ public class WizardBuilder
   }
 
   /**
-   * Gets an instance of the step with the supplied name.
+   * Gets the wizard step for the step with the supplied name.
+   * <p/>
+   * The step class is resolved here, but the step itself is only constructed
+   * once the wizard first activates it.
    *
    * @param _name The step name.
    * @param _properties The step properties.
    *
    * @return The step.
    */
-  private static Object getStep(String _name, Properties _properties)
+  private static org.pietschy.wizard.WizardStep getStep(
+      String _name, Properties _properties)
   {
-    try{
-      String name = _name;
-      if(consoleMode){
-        name += ".console";
-      }
+    String classname = steps.getProperty(
+        consoleMode ? _name + ".console" : _name);
+    if(classname == null){
+      throw new RuntimeException(
+          Installer.getString("step.not.found", _name));
+    }
 
-      String classname = steps.getProperty(name);
-      if(classname == null){
-        throw new RuntimeException(
-            Installer.getString("step.not.found", _name));
-      }
-      Constructor constructor = Class.forName(classname)
-        .getConstructor(new Class[]{String.class, Properties.class});
-      WizardStep step = (WizardStep)
-        constructor.newInstance(new Object[]{_name, _properties});
+    StepFactory factory = new StepFactory(
+        getConstructor(classname, _name), _name, _properties);
+    if(consoleMode){
+      return new ConsoleWizardStep(factory);
+    }
+    return new GuiWizardStep(factory);
+  }
 
-      if(consoleMode){
-        return new ConsoleWizardStep((ConsoleStep)step);
-      }
-      return new GuiWizardStep((GuiStep)step);
-    }catch(InvocationTargetException ite){
-      Throwable target = ite.getTargetException();
-      if(target instanceof IllegalArgumentException){
-        throw (IllegalArgumentException)target;
+  /**
+   * Gets a new instance of the headless implementation of the step with the
+   * supplied name.
+   *
+   * @param _name The step name.
+   * @param _properties The step properties.
+   *
+   * @return The step or null if the step has no headless implementation.
+   */
+  public static HeadlessStep getHeadlessStep(
+      String _name, Properties _properties)
+  {
+    String classname = steps.getProperty(_name + ".headless");
+    if(classname == null){
+      return null;
+    }
+    return (HeadlessStep)new StepFactory(
+        getConstructor(classname, _name), _name, _properties).newStep();
+  }
+
+  /**
+   * Gets the (name, properties) constructor of the supplied step class,
+   * looking it up only the first time the class is requested.
+   *
+   * @param _classname The step class name.
+   * @param _name The step name.
+   *
+   * @return The constructor.
+   */
+  private static synchronized Constructor getConstructor(
+      String _classname, String _name)
+  {
+    Constructor constructor = (Constructor)constructors.get(_classname);
+    if(constructor == null){
+      try{
+        constructor = Class.forName(_classname)
+          .getConstructor(new Class[]{String.class, Properties.class});
+      }catch(Exception e){
+        throw new RuntimeException(
+            Installer.getString("step.error.loading", _name), e);
       }
-      throw new RuntimeException(target);
-    }catch(RuntimeException re){
-      throw re;
-    }catch(Exception e){
-      throw new RuntimeException(
-          Installer.getString("step.error.loading", _name), e);
+      constructors.put(_classname, constructor);
     }
+    return constructor;
   }
 
   /**
@@ -0,0 +1,42 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.form;
+
+/**
+ * Defines a validator whose checks may block (file system access, etc.) and
+ * which should therefore be run off of the event dispatch thread, via
+ * {@link ValidationRequest}, where superseded checks can be cancelled.
+ *
+ * @author Eric Van Dewoestine
+ */
+public interface AsyncValidator
+  extends Validator
+{
+  /**
+   * Validates the supplied value.  Implementations that perform several
+   * checks should stop once the request has been cancelled, in which case
+   * the result is ignored.
+   *
+   * @param value The value to validate.
+   * @param request The request being serviced, or null if not validating on
+   * behalf of a request.
+   * @return null if the value is valid, otherwise the error message.
+   */
+  public String validate(Object value, ValidationRequest request);
+}
@@ -42,6 +42,7 @@ public class Form
 
   private List fields = new ArrayList();
   private List invalidFields = new ArrayList();
+  private List validatingFields = new ArrayList();
 
   private PropertyChangeSupport propertyChangeSupport;
 
@@ -80,6 +81,53 @@ public class Form
     }
   }
 
+  /**
+   * Sets a form value which is not backed by a bound component (ex. one
+   * row of a table).
+   *
+   * @param name The name of the value.
+   * @param value The value.
+   */
+  public void setValue(String name, Object value)
+  {
+    values.put(name, value);
+  }
+
+  /**
+   * Marks the supplied field as having a validation in progress.  While any
+   * field is being validated the form is not considered valid.
+   *
+   * @param field The form field.
+   * @param component The component.
+   * @param validating true if a validation is in progress, false otherwise.
+   */
+  public void setValidating(
+      FormField field, JComponent component, boolean validating)
+  {
+    boolean formValid = isValid();
+
+    validatingFields.remove(field);
+    if(validating){
+      validatingFields.add(field);
+    }
+    ValidationUtils.setValidating(component, validating);
+
+    if(formValid != isValid()){
+      propertyChangeSupport.firePropertyChange(VALID, formValid, isValid());
+    }
+  }
+
+  /**
+   * Determines if a validation is in progress for the supplied field.
+   *
+   * @param field The form field.
+   * @return true if the field is being validated, false otherwise.
+   */
+  public boolean isValidating(FormField field)
+  {
+    return validatingFields.contains(field);
+  }
+
   /**
    * Gets as map of all the form values.
    *
@@ -97,7 +145,7 @@ public class Form
    */
   public boolean isValid()
   {
-    return invalidFields.size() == 0;
+    return invalidFields.size() == 0 && validatingFields.size() == 0;
   }
 
   /**
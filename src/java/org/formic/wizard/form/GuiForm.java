@@ -80,6 +80,19 @@ public class GuiForm
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * @see Form#setValidating(FormField,JComponent,boolean)
+   */
+  public void setValidating(
+      FormField field, JComponent component, boolean validating)
+  {
+    super.setValidating(field, component, validating);
+    if (component.hasFocus()){
+      focusField(component);
+    }
+  }
+
   /**
    * Binds the supplied JTextComponent to this form.
    *
@@ -250,7 +263,11 @@ public class GuiForm
   public void focusField(JComponent component)
   {
     String error = ValidationUtils.getValidationError(component);
-    if(error != null){
+    if(ValidationUtils.isValidating(component)){
+      String name = (String)component.getClientProperty(NAME);
+      showInfoMessage(Installer.getString(
+            "form.validating", Installer.getString(name)));
+    }else if(error != null){
       String name = (String)component.getClientProperty(NAME);
       showErrorMessage(Installer.getString(error, Installer.getString(name)));
     }else{ // standard hint.
@@ -0,0 +1,172 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.form;
+
+import javax.swing.SwingUtilities;
+
+import org.formic.util.WorkerPool;
+
+import org.formic.wizard.form.validator.AggregateValidator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pending validation of a value, run on a shared pool of background
+ * threads, whose result is delivered to a {@link Callback} on the event
+ * dispatch thread unless the request is cancelled first.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class ValidationRequest
+{
+  private static final Logger logger =
+    LoggerFactory.getLogger(ValidationRequest.class);
+
+  private static final WorkerPool POOL = new WorkerPool("validator", 4);
+
+  private Validator validator;
+  private Object value;
+  private Callback callback;
+  private volatile boolean cancelled;
+
+  private ValidationRequest (
+      Validator validator, Object value, Callback callback)
+  {
+    this.validator = validator;
+    this.value = value;
+    this.callback = callback;
+  }
+
+  /**
+   * Submits the supplied value for validation.
+   *
+   * @param validator The validator to use.
+   * @param value The value to validate.
+   * @param callback The callback to notify, on the event dispatch thread, of
+   * the result.
+   * @return The request, which may be used to cancel it.
+   */
+  public static ValidationRequest submit(
+      Validator validator, Object value, Callback callback)
+  {
+    final ValidationRequest request =
+      new ValidationRequest(validator, value, callback);
+    POOL.execute(new Runnable(){
+      public void run(){
+        request.run();
+      }
+    });
+    return request;
+  }
+
+  /**
+   * Determines if the supplied validator may block and should therefore be
+   * run via a request instead of inline.
+   *
+   * @param validator The validator.
+   * @return true if the validator is asynchronous.
+   */
+  public static boolean isAsync(Validator validator)
+  {
+    if(validator instanceof AggregateValidator){
+      return ((AggregateValidator)validator).isAsync();
+    }
+    return validator instanceof AsyncValidator;
+  }
+
+  /**
+   * Cancels this request.  If the validation has not yet started it will be
+   * skipped, and in any case the callback will not be notified.
+   */
+  public void cancel()
+  {
+    cancelled = true;
+  }
+
+  /**
+   * Determines if this request has been cancelled.
+   *
+   * @return true if cancelled, false otherwise.
+   */
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  private void run()
+  {
+    if(cancelled){
+      return;
+    }
+
+    // always deliver a result, an exception counting as invalid, so that
+    // the field is never left waiting on this request.
+    boolean valid = false;
+    String error = null;
+    try{
+      if(validator instanceof AsyncValidator){
+        error = ((AsyncValidator)validator).validate(value, this);
+      }else if(!validator.isValid(value)){
+        error = validator.getErrorMessage();
+      }
+      valid = error == null;
+    }catch(RuntimeException re){
+      logger.error("Error validating value: " + value, re);
+      error = re.getMessage();
+    }finally{
+      if(!valid && error == null){
+        error = validator.getErrorMessage();
+      }
+      deliver(valid, error);
+    }
+  }
+
+  /**
+   * Notifies the callback, on the event dispatch thread, of the result unless
+   * this request has been cancelled.
+   *
+   * @param valid true if the value is valid, false otherwise.
+   * @param error The error message if not valid.
+   */
+  private void deliver(final boolean valid, final String error)
+  {
+    SwingUtilities.invokeLater(new Runnable(){
+      public void run(){
+        if(!cancelled){
+          callback.validated(valid, error);
+        }
+      }
+    });
+  }
+
+  /**
+   * Callback notified of the result of a validation request.
+   */
+  public interface Callback
+  {
+    /**
+     * Invoked on the event dispatch thread when the validation completes.
+     *
+     * @param valid true if the value is valid, false otherwise.
+     * @param error The error message if not valid.
+     */
+    public void validated(boolean valid, String error);
+  }
+}
@@ -38,6 +38,7 @@ public class ValidationUtils
   private static final String REQUIRED = "required";
   private static final String VALIDATOR = "validator";
   private static final String VALIDATION_ERROR = "validation.error";
+  private static final String VALIDATING = "validating";
 
   private static final Color VALID_COLOR =
     new JTextField().getBackground();
@@ -76,21 +77,47 @@ public class ValidationUtils
    */
   public static boolean validate(JComponent component, String value)
   {
-    Validator validator = (Validator)component.getClientProperty(VALIDATOR);
+    Validator validator = getValidator(component);
     if(validator != null){
       boolean valid = validator.isValid(value);
-      if(!valid){
-        component.putClientProperty(VALIDATION_ERROR, validator.getErrorMessage());
-        component.setBackground(ERROR_COLOR);
-      }else{
-        component.putClientProperty(VALIDATION_ERROR, null);
-        component.setBackground(VALID_COLOR);
-      }
+      setValidationResult(
+          component, valid, valid ? null : validator.getErrorMessage());
       return valid;
     }
     return true;
   }
 
+  /**
+   * Gets the validator associated with the supplied component.
+   *
+   * @param component The component.
+   * @return The validator or null if none.
+   */
+  public static Validator getValidator(JComponent component)
+  {
+    return (Validator)component.getClientProperty(VALIDATOR);
+  }
+
+  /**
+   * Decorates the supplied component according to the result of validating
+   * its value.  Must be called on the event dispatch thread.
+   *
+   * @param component The component.
+   * @param valid true if the component's value is valid, false otherwise.
+   * @param error The validation error message when not valid.
+   */
+  public static void setValidationResult(
+      JComponent component, boolean valid, String error)
+  {
+    if(!valid){
+      component.putClientProperty(VALIDATION_ERROR, error);
+      component.setBackground(ERROR_COLOR);
+    }else{
+      component.putClientProperty(VALIDATION_ERROR, null);
+      component.setBackground(VALID_COLOR);
+    }
+  }
+
   /**
    * Determines if the supplied field is required.
    *
@@ -103,6 +130,30 @@ public class ValidationUtils
     return bool != null ? bool.booleanValue() : false;
   }
 
+  /**
+   * Sets whether a validation of the supplied component's value is in
+   * progress.
+   *
+   * @param component The component.
+   * @param validating true if validating, false otherwise.
+   */
+  public static void setValidating(JComponent component, boolean validating)
+  {
+    component.putClientProperty(VALIDATING, validating ? Boolean.TRUE : null);
+  }
+
+  /**
+   * Determines if a validation of the supplied component's value is in
+   * progress.
+   *
+   * @param component The component.
+   * @return true if validating, false otherwise.
+   */
+  public static boolean isValidating(JComponent component)
+  {
+    return component.getClientProperty(VALIDATING) != null;
+  }
+
   /**
    * Gets the validation error message for the supplied component.
    *
@@ -18,8 +18,7 @@
  */
 package org.formic.wizard.form.gui.binding;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import javax.swing.SwingUtilities;
 
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
@@ -31,9 +30,13 @@ import org.apache.tools.ant.Project;
 
 import org.formic.Installer;
 
+import org.formic.util.Debouncer;
+
 import org.formic.wizard.form.Form;
 import org.formic.wizard.form.FormField;
+import org.formic.wizard.form.ValidationRequest;
 import org.formic.wizard.form.ValidationUtils;
+import org.formic.wizard.form.Validator;
 
 /**
  * Class for binding a JTextComponent to a Form.
@@ -46,7 +49,9 @@ public class TextComponentBinding
 {
   private JTextComponent component;
   private Form form;
-  private Timer timer;
+  private Debouncer debouncer = new Debouncer(200);
+  private volatile int revision;
+  private ValidationRequest request;
 
   /**
    * Constructs a new instance.
@@ -96,23 +101,116 @@ public class TextComponentBinding
 
   private void textUpdated(final DocumentEvent e)
   {
-    if(timer != null){
-      timer.cancel();
+    final int current = ++revision;
+    final Validator validator = ValidationUtils.getValidator(component);
+    final boolean async = ValidationRequest.isAsync(validator);
+
+    setRequest(null);
+    if(async){
+      form.setValidating(this, component, true);
     }
-    timer = new Timer();
-    timer.schedule(new TimerTask(){
-      public void run() {
+
+    debouncer.schedule(new Runnable(){
+      public void run(){
+        String value = null;
         try{
           Document document = e.getDocument();
-          String value = document.getText(0, document.getLength());
-          boolean valid = ValidationUtils.validate(component, value);
-          form.setValue(TextComponentBinding.this, component, value, valid);
-          timer.cancel();
+          value = document.getText(0, document.getLength());
+
+          // potentially slow validators run on the shared validation pool.
+          if(async){
+            final String text = value;
+            setRequest(ValidationRequest.submit(validator, value,
+              new ValidationRequest.Callback(){
+                public void validated(boolean valid, String error){
+                  if(current == revision){
+                    form.setValidating(
+                      TextComponentBinding.this, component, false);
+                    update(validator, text, valid, error);
+                  }
+                }
+              }));
+            return;
+          }
+
+          boolean valid = validator == null || validator.isValid(value);
+          updateLater(current, async, validator, value,
+              valid, valid ? null : validator.getErrorMessage());
         }catch(Exception ex){
           Installer.getProject().log(
             "Error on text update", ex, Project.MSG_DEBUG);
+
+          // treat the failure as invalid rather than leaving the field
+          // waiting on a result that will never arrive.
+          String error = ex.getMessage();
+          if(error == null && validator != null){
+            error = validator.getErrorMessage();
+          }
+          updateLater(current, async, validator, value, false, error);
+        }
+      }
+    });
+  }
+
+  /**
+   * Applies the result of validating the field's value on the event
+   * dispatch thread, unless the text has changed again since.
+   *
+   * @param current The revision of the text validated.
+   * @param async true if the field was marked as validating.
+   * @param validator The field's validator, if any.
+   * @param value The validated value.
+   * @param valid true if the value is valid, false otherwise.
+   * @param error The validation error message if not valid.
+   */
+  private void updateLater(
+      final int current,
+      final boolean async,
+      final Validator validator,
+      final String value,
+      final boolean valid,
+      final String error)
+  {
+    SwingUtilities.invokeLater(new Runnable(){
+      public void run(){
+        // the text has changed again since this validation started.
+        if(current == revision){
+          if(async){
+            form.setValidating(TextComponentBinding.this, component, false);
+          }
+          update(validator, value, valid, error);
         }
       }
-    }, 200);
+    });
+  }
+
+  /**
+   * Applies the result of validating the field's value.
+   *
+   * @param validator The field's validator, if any.
+   * @param value The validated value.
+   * @param valid true if the value is valid, false otherwise.
+   * @param error The validation error message if not valid.
+   */
+  private void update(
+      Validator validator, String value, boolean valid, String error)
+  {
+    if(validator != null){
+      ValidationUtils.setValidationResult(component, valid, error);
+    }
+    form.setValue(this, component, value, valid);
+  }
+
+  /**
+   * Sets the current validation request, cancelling any previous one.
+   *
+   * @param request The new request or null for none.
+   */
+  private synchronized void setRequest(ValidationRequest request)
+  {
+    if(this.request != null){
+      this.request.cancel();
+    }
+    this.request = request;
   }
 }
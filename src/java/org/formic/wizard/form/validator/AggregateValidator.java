@@ -22,15 +22,20 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.formic.wizard.form.AsyncValidator;
+import org.formic.wizard.form.ValidationRequest;
 import org.formic.wizard.form.Validator;
 
 /**
  * Aggregates one or more validators.
+ * <p/>
+ * Validators are run in the order they were added, stopping at the first
+ * failure or once the request being serviced is cancelled.
  *
  * @author Eric Van Dewoestine
  */
 public class AggregateValidator
-  implements Validator
+  implements AsyncValidator
 {
   private List validators = new ArrayList();
   private String message;
@@ -50,15 +55,37 @@ public class AggregateValidator
    * @see Validator#isValid(Object)
    */
   public boolean isValid(Object value)
+  {
+    String error = validate(value, null);
+    if(error != null){
+      message = error;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see AsyncValidator#validate(Object,ValidationRequest)
+   */
+  public String validate(Object value, ValidationRequest request)
   {
     for (Iterator ii = validators.iterator(); ii.hasNext();){
+      if(request != null && request.isCancelled()){
+        return null;
+      }
+
       Validator validator = (Validator)ii.next();
-      if(!validator.isValid(value)){
-        message = validator.getErrorMessage();
-        return false;
+      if(validator instanceof AsyncValidator){
+        String error = ((AsyncValidator)validator).validate(value, request);
+        if(error != null){
+          return error;
+        }
+      }else if(!validator.isValid(value)){
+        return validator.getErrorMessage();
       }
     }
-    return true;
+    return null;
   }
 
   /**
@@ -70,6 +97,27 @@ public class AggregateValidator
     return message;
   }
 
+  /**
+   * Determines if any of the aggregated validators may block and therefore
+   * this aggregate should be run asynchronously.
+   *
+   * @return true if asynchronous, false otherwise.
+   */
+  public boolean isAsync()
+  {
+    for (Iterator ii = validators.iterator(); ii.hasNext();){
+      Object val = ii.next();
+      if(val instanceof AggregateValidator){
+        if(((AggregateValidator)val).isAsync()){
+          return true;
+        }
+      }else if(val instanceof AsyncValidator){
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Determines if this aggregate contains the supplied validator.
    *
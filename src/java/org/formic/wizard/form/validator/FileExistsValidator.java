@@ -20,15 +20,13 @@ package org.formic.wizard.form.validator;
 
 import java.io.File;
 
-import org.formic.wizard.form.Validator;
-
 /**
  * Validator that determines if the file / directory exists.
  *
  * @author Eric Van Dewoestine
  */
 public class FileExistsValidator
-  implements Validator
+  extends FileValidator
 {
   public static final FileExistsValidator INSTANCE = new FileExistsValidator();
 
@@ -43,20 +41,16 @@ public class FileExistsValidator
 
   /**
    * {@inheritDoc}
-   * @see Validator#isValid(Object)
+   * @see FileValidator#check(String)
    */
-  public boolean isValid(Object value)
+  protected boolean check(String file)
   {
-    String file = (String)value;
-    if(file != null && file.trim().length() > 0){
-      return new File(file).exists();
-    }
-    return true;
+    return new File(file).exists();
   }
 
   /**
    * {@inheritDoc}
-   * @see Validator#getErrorMessage()
+   * @see org.formic.wizard.form.Validator#getErrorMessage()
    */
   public String getErrorMessage()
   {
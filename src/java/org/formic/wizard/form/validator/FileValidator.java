@@ -0,0 +1,115 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.form.validator;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.formic.wizard.form.AsyncValidator;
+import org.formic.wizard.form.ValidationRequest;
+
+/**
+ * Base class for validators which check the file system for the path being
+ * validated.  Since such checks may block for some time on network or
+ * automounted file systems, results are cached per path for a short period
+ * and the validator is run off of the event dispatch thread.
+ *
+ * @author Eric Van Dewoestine
+ */
+public abstract class FileValidator
+  implements AsyncValidator
+{
+  private static final long TTL = 2000;
+  private static final int PRUNE_SIZE = 200;
+  private static final Map CACHE = new HashMap();
+
+  /**
+   * {@inheritDoc}
+   * @see org.formic.wizard.form.Validator#isValid(Object)
+   */
+  public boolean isValid(Object value)
+  {
+    String file = (String)value;
+    if(file == null || file.trim().length() == 0){
+      return true;
+    }
+
+    String key = getClass().getName() + ':' + file;
+    long now = System.currentTimeMillis();
+    synchronized(CACHE){
+      Result result = (Result)CACHE.get(key);
+      if(result != null && now - result.time < TTL){
+        return result.valid;
+      }
+    }
+
+    boolean valid = check(file);
+    synchronized(CACHE){
+      if(CACHE.size() >= PRUNE_SIZE){
+        for (Iterator ii = CACHE.values().iterator(); ii.hasNext();){
+          if(now - ((Result)ii.next()).time >= TTL){
+            ii.remove();
+          }
+        }
+      }
+      CACHE.put(key, new Result(valid, now));
+    }
+    return valid;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see AsyncValidator#validate(Object,ValidationRequest)
+   */
+  public String validate(Object value, ValidationRequest request)
+  {
+    return isValid(value) ? null : getErrorMessage();
+  }
+
+  /**
+   * Clears all cached results (ex. after the installer creates a directory).
+   */
+  public static void clearCache()
+  {
+    synchronized(CACHE){
+      CACHE.clear();
+    }
+  }
+
+  /**
+   * Checks the file system for the supplied path.
+   *
+   * @param file The non-empty path to check.
+   * @return true if the path is valid, false otherwise.
+   */
+  protected abstract boolean check(String file);
+
+  private static class Result
+  {
+    public boolean valid;
+    public long time;
+
+    public Result(boolean valid, long time)
+    {
+      this.valid = valid;
+      this.time = time;
+    }
+  }
+}
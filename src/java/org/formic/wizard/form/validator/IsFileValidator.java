@@ -20,15 +20,13 @@ package org.formic.wizard.form.validator;
 
 import java.io.File;
 
-import org.formic.wizard.form.Validator;
-
 /**
  * Validator that determines if the value is a valid file.
  *
  * @author Eric Van Dewoestine
  */
 public class IsFileValidator
-  implements Validator
+  extends FileValidator
 {
   public static final IsFileValidator INSTANCE = new IsFileValidator();
 
@@ -43,20 +41,16 @@ public class IsFileValidator
 
   /**
    * {@inheritDoc}
-   * @see Validator#isValid(Object)
+   * @see FileValidator#check(String)
    */
-  public boolean isValid(Object value)
+  protected boolean check(String file)
   {
-    String file = (String)value;
-    if(file != null && file.trim().length() > 0){
-      return new File(file).isFile();
-    }
-    return true;
+    return new File(file).isFile();
   }
 
   /**
    * {@inheritDoc}
-   * @see Validator#getErrorMessage()
+   * @see org.formic.wizard.form.Validator#getErrorMessage()
    */
   public String getErrorMessage()
   {
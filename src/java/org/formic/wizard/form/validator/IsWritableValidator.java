@@ -20,8 +20,6 @@ package org.formic.wizard.form.validator;
 
 import org.formic.util.File;
 
-import org.formic.wizard.form.Validator;
-
 /**
  * Validator that determines if the user has write permissions to the value
  * which should be a valid file or directory path.
@@ -29,7 +27,7 @@ import org.formic.wizard.form.Validator;
  * @author Eric Van Dewoestine
  */
 public class IsWritableValidator
-  implements Validator
+  extends FileValidator
 {
   public static final IsWritableValidator INSTANCE = new IsWritableValidator();
 
@@ -44,20 +42,16 @@ public class IsWritableValidator
 
   /**
    * {@inheritDoc}
-   * @see Validator#isValid(Object)
+   * @see FileValidator#check(String)
    */
-  public boolean isValid(Object value)
+  protected boolean check(String file)
   {
-    String file = (String)value;
-    if(file != null && file.trim().length() > 0){
-      return new File(file).canWrite();
-    }
-    return true;
+    return new File(file).canWrite();
   }
 
   /**
    * {@inheritDoc}
-   * @see Validator#getErrorMessage()
+   * @see org.formic.wizard.form.Validator#getErrorMessage()
    */
   public String getErrorMessage()
   {
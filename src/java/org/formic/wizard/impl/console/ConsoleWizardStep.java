@@ -26,6 +26,10 @@ import javax.swing.Icon;
 
 import charva.awt.Component;
 
+import org.formic.wizard.StepFactory;
+
+import org.formic.wizard.impl.models.LazyStep;
+
 import org.formic.wizard.step.ConsoleStep;
 
 import org.pietschy.wizard.InvalidStateException;
@@ -33,13 +37,15 @@ import org.pietschy.wizard.WizardModel;
 
 /**
  * Wraps {@link org.pietschy.wizard.WizardStep} implementations for use in the
- * console wizard framework.
+ * console wizard framework.  The wrapped step is created when the wizard
+ * first activates this step.
  *
  * @author Eric Van Dewoestine
  */
 public class ConsoleWizardStep
-  implements org.pietschy.wizard.WizardStep, PropertyChangeListener
+  implements org.pietschy.wizard.WizardStep, LazyStep, PropertyChangeListener
 {
+  private StepFactory factory;
   private ConsoleStep step;
   private Component component;
   private boolean complete;
@@ -50,24 +56,35 @@ public class ConsoleWizardStep
   /**
    * Constructs a new instance.
    *
-   * @param step The step for this instance.
+   * @param factory The factory which creates the step for this instance.
    */
-  public ConsoleWizardStep(ConsoleStep step)
+  public ConsoleWizardStep(StepFactory factory)
   {
-    this.step = step;
+    this.factory = factory;
     changeSupport = new PropertyChangeSupport(this);
-
-    step.addPropertyChangeListener(this);
   }
 
   /**
-   * Gets the step for this instance.
+   * Gets the step for this instance, creating it if necessary.
    *
    * @return The step.
    */
-  public ConsoleStep getStep()
+  public synchronized ConsoleStep getStep()
+  {
+    if(step == null){
+      step = (ConsoleStep)factory.getStep();
+      step.addPropertyChangeListener(this);
+    }
+    return step;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see LazyStep#activate()
+   */
+  public void activate()
   {
-    return this.step;
+    getStep();
   }
 
   /**
@@ -78,7 +95,7 @@ public class ConsoleWizardStep
   public Component getConsoleView()
   {
     if(component == null){
-      component = step.init();
+      component = getStep().init();
     }
     return component;
   }
@@ -89,7 +106,7 @@ public class ConsoleWizardStep
    */
   public String getName()
   {
-    return step.getTitle();
+    return factory.getTitle();
   }
 
   /**
@@ -98,7 +115,7 @@ public class ConsoleWizardStep
    */
   public String getSummary()
   {
-    return step.getDescription();
+    return factory.getDescription();
   }
 
   /**
@@ -160,7 +177,7 @@ public class ConsoleWizardStep
   public void applyState()
     throws InvalidStateException
   {
-    if (!step.proceed()){
+    if (!getStep().proceed()){
       throw new InvalidStateException("", false);
     }
   }
@@ -36,8 +36,11 @@ import org.formic.Installer;
 
 import org.formic.util.dialog.gui.GuiDialogs;
 
+import org.formic.wizard.StepFactory;
 import org.formic.wizard.WizardStep;
 
+import org.formic.wizard.impl.models.LazyStep;
+
 import org.formic.wizard.step.GuiStep;
 
 import org.pietschy.wizard.InvalidStateException;
@@ -46,36 +49,51 @@ import org.pietschy.wizard.WizardModel;
 
 /**
  * Wraps {@link GuiStep} implementations for use in the gui wizard framework.
+ * The wrapped step is created when the wizard first activates this step.
  *
  * @author Eric Van Dewoestine
  */
 public class GuiWizardStep
   extends PanelWizardStep
-  implements PropertyChangeListener
+  implements LazyStep, PropertyChangeListener
 {
   private static final long serialVersionUID = 1L;
 
   private static final String BUSY_TEXT = Installer.getString("busy.text");
 
-  private GuiStep step;
+  private StepFactory factory;
+  private volatile GuiStep step;
   private Component component;
   private SingleComponentInfiniteProgress infiniteProgress;
 
   /**
    * Constructs a new instance.
    *
-   * @param step The step for this instance.
+   * @param factory The factory which creates the step for this instance.
    */
-  public GuiWizardStep(GuiStep step)
+  public GuiWizardStep(StepFactory factory)
   {
-    super(step.getTitle(), step.getDescription());
-    this.step = step;
-    step.addPropertyChangeListener(this);
+    super(factory.getTitle(), factory.getDescription());
+    this.factory = factory;
 
     // set complete to true by default.
     setComplete(true);
   }
 
+  /**
+   * {@inheritDoc}
+   * @see LazyStep#activate()
+   */
+  public void activate()
+  {
+    try{
+      getStep();
+    }catch(RuntimeException re){
+      GuiDialogs.showError(re);
+      throw re;
+    }
+  }
+
   /**
    * {@inheritDoc}
    * @see PanelWizardStep#setBusy(boolean)
@@ -88,7 +106,7 @@ public class GuiWizardStep
     Container grandparent = getParent().getParent().getParent();
     Container parent = getParent().getParent();
 
-    if(step.isBusyAnimated()){
+    if(getStep().isBusyAnimated()){
       if(busy){
         if(infiniteProgress == null){
           infiniteProgress = new SingleComponentInfiniteProgress(false);
@@ -101,7 +119,7 @@ public class GuiWizardStep
           grandparent.add(container, BorderLayout.CENTER);
           container.setGlassPane(infiniteProgress);
 
-          String busyText = Installer.getString(step.getName() + ".busy");
+          String busyText = Installer.getString(factory.getName() + ".busy");
           infiniteProgress.setText(busyText != null ? busyText : BUSY_TEXT);
         }
 
@@ -130,13 +148,13 @@ public class GuiWizardStep
   {
     try{
       if(component == null){
-        component = step.init();
+        component = ((GuiStep)getStep()).init();
 
         setLayout(new BorderLayout());
         add(component, BorderLayout.CENTER);
       }
 
-      step.prepare();
+      getStep().prepare();
     }catch(Exception e){
       GuiDialogs.showError(e);
     }
@@ -149,7 +167,7 @@ public class GuiWizardStep
   public void applyState()
     throws InvalidStateException
   {
-    if (!step.proceed()){
+    if (!getStep().proceed()){
       throw new InvalidStateException("", false);
     }
   }
@@ -160,6 +178,9 @@ public class GuiWizardStep
    */
   public boolean isComplete()
   {
+    if(step == null){
+      return super.isComplete();
+    }
     return step.isValid();
   }
 
@@ -169,7 +190,7 @@ public class GuiWizardStep
    */
   public boolean isBusy()
   {
-    return step.isBusy();
+    return step != null && step.isBusy();
   }
 
   /**
@@ -178,7 +199,7 @@ public class GuiWizardStep
    */
   public Icon getIcon()
   {
-    return step.getIcon();
+    return step != null ? step.getIcon() : null;
   }
 
   /**
@@ -205,8 +226,10 @@ public class GuiWizardStep
    */
   public void abortBusy()
   {
-    step.abort();
-    setBusy(false);
+    if(step != null){
+      step.abort();
+      setBusy(false);
+    }
   }
 
   /**
@@ -221,12 +244,16 @@ public class GuiWizardStep
   }
 
   /**
-   * Gets the underlying step.
+   * Gets the underlying step, creating it if necessary.
    *
    * @return The WizardStep.
    */
-  public WizardStep getStep()
+  public synchronized WizardStep getStep()
   {
+    if(step == null){
+      step = (GuiStep)factory.getStep();
+      step.addPropertyChangeListener(this);
+    }
     return step;
   }
 }
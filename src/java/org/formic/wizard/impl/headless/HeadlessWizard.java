@@ -0,0 +1,366 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.impl.headless;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.tools.ant.BuildException;
+
+import org.apache.tools.ant.taskdefs.condition.Condition;
+
+import org.formic.InstallContext;
+import org.formic.Installer;
+import org.formic.ResponseRecorder;
+
+import org.formic.ant.type.Branch;
+import org.formic.ant.type.Path;
+import org.formic.ant.type.Step;
+
+import org.formic.util.ResponseFile;
+
+import org.formic.wizard.Wizard;
+import org.formic.wizard.WizardBuilder;
+
+import org.formic.wizard.step.HeadlessStep;
+
+import org.formic.wizard.step.headless.InstallStep;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wizard for unattended installs which loads the install context from a
+ * response file and then runs each step along the chosen path without any
+ * user interface.
+ * <p/>
+ * Steps are only instantiated once reached, branches are evaluated against
+ * the values set by the preceding steps just as in the gui, and steps with no
+ * headless implementation (welcome, summary, etc.) are skipped.  Response
+ * files written by a {@link ResponseRecorder} are rejected when recorded
+ * with a different installer jar.  The outcome is available as an exit code
+ * and, when a result file is supplied, is also written to that file as
+ * name / value pairs (status, code, step, message, duration, steps).
+ *
+ * @author Eric Van Dewoestine
+ */
+public class HeadlessWizard
+  implements Wizard
+{
+  private static final Logger logger =
+    LoggerFactory.getLogger(HeadlessWizard.class);
+
+  /**
+   * Exit code when all steps completed.
+   */
+  public static final int OK = 0;
+
+  /**
+   * Exit code when the response file could not be read or one of its values
+   * was rejected by a step.
+   */
+  public static final int INVALID = 2;
+
+  /**
+   * Exit code when a step, including the install itself, failed with an
+   * error.
+   */
+  public static final int FAILED = 3;
+
+  private Path main;
+  private Map paths;
+  private File response;
+  private File result;
+
+  private int code = FAILED;
+  private String status;
+  private String step;
+  private String message;
+  private long duration;
+  private List completed = new ArrayList();
+  private List reached = new ArrayList();
+  private String[] recordedPath;
+  private int installReached = -1;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param main The main path.
+   * @param paths Map of path names to all other paths.
+   * @param response The response file to load the install context from.
+   * @param result The file to write the result to, or null for none.
+   */
+  public HeadlessWizard(Path main, Map paths, File response, File result)
+  {
+    this.main = main;
+    this.paths = paths;
+    this.response = response;
+    this.result = result;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Runs the wizard to completion on the calling thread.
+   *
+   * @see org.formic.wizard.Wizard#showWizard(String)
+   */
+  public void showWizard(String action)
+  {
+    long started = System.currentTimeMillis();
+    try{
+      load();
+      if(run(main)){
+        checkPath();
+        finish(OK, null, null);
+      }
+    }catch(IOException ioe){
+      logger.error("Unable to read response file: " + response, ioe);
+      finish(INVALID, null, ioe.getMessage());
+    }catch(Exception e){
+      logger.error("Error running step '" + step + "'.", e);
+      finish(FAILED, step, e.getMessage() != null ?
+          e.getMessage() : e.getClass().getName());
+    }
+    duration = System.currentTimeMillis() - started;
+
+    Map values = getResult();
+    logger.info(action + " result: " + values);
+    if(result != null){
+      try{
+        ResponseFile.store(values, result);
+      }catch(IOException ioe){
+        logger.error("Unable to write result file: " + result, ioe);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The wizard has already completed when {@link #showWizard(String)}
+   * returns, so there is nothing to wait for.
+   *
+   * @see org.formic.wizard.Wizard#waitFor()
+   */
+  public void waitFor()
+  {
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see org.formic.wizard.Wizard#wasCanceled()
+   */
+  public boolean wasCanceled()
+  {
+    return code != OK;
+  }
+
+  /**
+   * Gets the exit code of the run.
+   *
+   * @return One of {@link #OK}, {@link #INVALID}, or {@link #FAILED}.
+   */
+  public int getExitCode()
+  {
+    return code;
+  }
+
+  /**
+   * Gets the message describing why the run did not complete.
+   *
+   * @return The message or null if the run completed.
+   */
+  public String getMessage()
+  {
+    return message;
+  }
+
+  /**
+   * Gets the result of the run as an ordered map of names to values.
+   *
+   * @return The result.
+   */
+  public Map getResult()
+  {
+    Map values = new LinkedHashMap();
+    values.put("status", status);
+    values.put("code", String.valueOf(code));
+    values.put("step", step != null ? step : "");
+    values.put("message", message != null ? message : "");
+    values.put("duration", String.valueOf(duration));
+    values.put("steps", StringUtils.join(completed.iterator(), ','));
+    return values;
+  }
+
+  /**
+   * Loads the values of the response file into the install context.
+   */
+  private void load()
+    throws IOException
+  {
+    Map values = ResponseFile.load(response);
+
+    // entries describing a recorded session rather than context values.
+    String checksum = (String)values.remove(ResponseRecorder.CHECKSUM);
+    String path = (String)values.remove(ResponseRecorder.PATH);
+    for (Iterator ii = values.keySet().iterator(); ii.hasNext();){
+      if(((String)ii.next()).startsWith(ResponseRecorder.PREFIX)){
+        ii.remove();
+      }
+    }
+
+    if(checksum != null){
+      String installer = ResponseRecorder.getInstallerChecksum();
+      if(installer == null){
+        logger.warn("Unable to verify the response file's installer checksum.");
+      }else if(!installer.equals(checksum)){
+        throw new IOException(Installer.getString(
+              "response.checksum.mismatch", checksum, installer));
+      }
+    }
+    if(path != null && path.length() > 0){
+      recordedPath = StringUtils.split(path, ',');
+    }
+
+    InstallContext context = Installer.getContext();
+    for (Iterator ii = values.entrySet().iterator(); ii.hasNext();){
+      Map.Entry entry = (Map.Entry)ii.next();
+      context.setValue(entry.getKey(), entry.getValue());
+    }
+    logger.info("Loaded " + values.size() + " values from " + response);
+  }
+
+  /**
+   * Logs a warning if the steps reached differ from the path recorded with
+   * the response file, which indicates that a branch was decided
+   * differently than in the recorded session.
+   * <p/>
+   * Recording stops once the install begins, and the last step of a wizard
+   * is never proceeded past, so neither the install step and those following
+   * it, nor the final step of a wizard without one, are in the recorded path.
+   */
+  private void checkPath()
+  {
+    if(recordedPath == null){
+      return;
+    }
+    int taken = installReached != -1 ? installReached : reached.size();
+    int length = Math.min(recordedPath.length, taken);
+    int differs = -1;
+    for (int ii = 0; ii < length; ii++){
+      if(!recordedPath[ii].equals(reached.get(ii))){
+        differs = ii;
+        break;
+      }
+    }
+    if(differs == -1 && taken != recordedPath.length &&
+        !(installReached == -1 && taken == recordedPath.length + 1))
+    {
+      differs = length;
+    }
+    if(differs != -1){
+      logger.warn("Steps taken " + reached +
+          " differ from the recorded path " +
+          StringUtils.join(recordedPath, ',') +
+          " at step " + (differs + 1) + '.');
+    }
+  }
+
+  /**
+   * Runs the steps of the supplied path, following any branches whose
+   * condition holds.
+   *
+   * @param path The path.
+   * @return true if all steps completed, false if a step rejected its values.
+   */
+  private boolean run(Path path)
+    throws Exception
+  {
+    for (Iterator ii = path.getSteps().iterator(); ii.hasNext();){
+      Object next = ii.next();
+
+      // steps
+      if(next instanceof Step){
+        Step definition = (Step)next;
+        step = definition.getName();
+        reached.add(step);
+        HeadlessStep instance = WizardBuilder.getHeadlessStep(
+            definition.getName(), definition.getProperties());
+        if(instance == null){
+          logger.debug("Skipping step '" + step + "' (no headless step).");
+          continue;
+        }
+
+        if(installReached == -1 && instance instanceof InstallStep){
+          installReached = reached.size() - 1;
+        }
+
+        logger.info("Running step '" + step + "'");
+        String error = instance.process();
+        if(error != null){
+          logger.error("Step '" + step + "': " + error);
+          finish(INVALID, step, error);
+          return false;
+        }
+        completed.add(step);
+
+      // branches
+      }else{
+        Branch branch = (Branch)next;
+        Path branchPath = (Path)paths.get(branch.getPath());
+        if(branchPath == null){
+          throw new BuildException(
+            "No path '" + branch.getPath() + "' found for branch in '" +
+            path.getName() + "'");
+        }
+        if(((Condition)branch).eval()){
+          logger.debug("Following branch '" + branch.getPath() + "'");
+          if(!run(branchPath)){
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records the outcome of the run.
+   *
+   * @param code The exit code.
+   * @param step The step which did not complete or null if none.
+   * @param message The message describing the failure or null if none.
+   */
+  private void finish(int code, String step, String message)
+  {
+    this.code = code;
+    this.status = code == OK ? "completed" : code == INVALID ? "invalid" : "failed";
+    this.step = step;
+    this.message = message;
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.impl.models;
+
+/**
+ * Wizard step whose underlying step is only created once the step is first
+ * made active by the {@link MultiPathModel}.
+ *
+ * @author Eric Van Dewoestine
+ */
+public interface LazyStep
+{
+  /**
+   * Invoked each time the step is about to become the active step.
+   * Implementations create the underlying step on the first invocation.
+   */
+  public void activate();
+}
@@ -127,6 +127,21 @@ public class MultiPathModel
     return path.equals(getFirstPath()) && path.isFirstStep(step);
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Activates {@link LazyStep} instances before they are made active.
+   *
+   * @see org.pietschy.wizard.AbstractWizardModel#setActiveStep(WizardStep)
+   */
+  protected void setActiveStep(WizardStep step)
+  {
+    if(step instanceof LazyStep){
+      ((LazyStep)step).activate();
+    }
+    super.setActiveStep(step);
+  }
+
   /**
    * {@inheritDoc}
    */
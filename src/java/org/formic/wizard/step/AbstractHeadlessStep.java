@@ -0,0 +1,84 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step;
+
+import java.util.Properties;
+
+import org.formic.Installer;
+
+import org.formic.wizard.form.Validator;
+
+/**
+ * Abstract super class for headless wizard steps.
+ *
+ * @author Eric Van Dewoestine
+ */
+public abstract class AbstractHeadlessStep
+  extends AbstractStep
+  implements HeadlessStep
+{
+  /**
+   * @see AbstractStep#AbstractStep(String,Properties)
+   */
+  public AbstractHeadlessStep(String name, Properties properties)
+  {
+    super(name, properties);
+  }
+
+  /**
+   * Gets the install context value of the supplied field.
+   *
+   * @param name The unqualified field name.
+   * @return The value or null if none.
+   */
+  protected Object getValue(String name)
+  {
+    return Installer.getContext().getValue(fieldName(name));
+  }
+
+  /**
+   * Sets the install context value of the supplied field.
+   *
+   * @param name The unqualified field name.
+   * @param value The value.
+   */
+  protected void setValue(String name, Object value)
+  {
+    Installer.getContext().setValue(fieldName(name), value);
+  }
+
+  /**
+   * Validates the value of the supplied field using the same validators the
+   * equivalent gui step binds to its form.
+   *
+   * @param name The unqualified field name.
+   * @param validator The validator.
+   * @return null if valid, otherwise the formatted error message.
+   */
+  protected String validate(String name, Validator validator)
+  {
+    Object value = getValue(name);
+    if(validator.isValid(value)){
+      return null;
+    }
+    String field = fieldName(name);
+    return Installer.getString(validator.getErrorMessage(),
+        Installer.getStringOrDefault(field, field), value);
+  }
+}
@@ -28,6 +28,7 @@ import java.util.Properties;
 
 import org.formic.InstallContext;
 import org.formic.Installer;
+import org.formic.ResponseRecorder;
 
 import org.formic.wizard.WizardStep;
 
@@ -43,9 +44,10 @@ import org.pietschy.wizard.WizardModel;
 public abstract class AbstractStep
   implements WizardStep, PropertyChangeListener
 {
-  protected static final String PROPERTY_REQUIRED = "property.required";
-  protected static final String PROPERTY_TYPE_INVALID = "property.type.invalid";
-  protected static final String PROPERTY_CLASS_NOT_FOUND = "property.class.not.found";
+  public static final String PROPERTY_REQUIRED = "property.required";
+  public static final String PROPERTY_INVALID = "property.invalid";
+  public static final String PROPERTY_TYPE_INVALID = "property.type.invalid";
+  public static final String PROPERTY_CLASS_NOT_FOUND = "property.class.not.found";
   protected static final String RESOURCE_REQUIRED = "resource.required";
   protected static final String RESOURCE_NOT_FOUND = "resource.not.found";
   protected static final String RESOURCE_INVALID = "resource.invalid";
@@ -117,6 +119,38 @@ public abstract class AbstractStep
     return properties.getProperty(name);
   }
 
+  /**
+   * Creates an instance of the class named by the supplied property.
+   *
+   * @param name The name of the property holding the class name.
+   * @param type The type the class must implement.
+   * @return The new instance.
+   */
+  protected Object newInstance(String name, Class type)
+  {
+    String className = getProperty(name);
+    if(className == null){
+      throw new IllegalArgumentException(
+          Installer.getString(PROPERTY_REQUIRED, name, getName()));
+    }
+
+    Object instance;
+    try{
+      instance = Class.forName(className).newInstance();
+    }catch(ClassNotFoundException cnfe){
+      throw new IllegalArgumentException(Installer.getString(
+            PROPERTY_CLASS_NOT_FOUND, name, className));
+    }catch(Exception e){
+      throw new RuntimeException(e);
+    }
+
+    if(!type.isInstance(instance)){
+      throw new IllegalArgumentException(Installer.getString(
+            PROPERTY_TYPE_INVALID, name, type.getName()));
+    }
+    return instance;
+  }
+
   /**
    * {@inheritDoc}
    * @see org.formic.wizard.WizardStep#prepare()
@@ -139,8 +173,8 @@ public abstract class AbstractStep
    */
   public boolean proceed()
   {
+    InstallContext context = Installer.getContext();
     if(form != null){
-      InstallContext context = Installer.getContext();
       Map values = form.getValues();
       for (Iterator ii = values.keySet().iterator(); ii.hasNext();){
         String key = (String)ii.next();
@@ -150,6 +184,11 @@ public abstract class AbstractStep
         }
       }
     }
+
+    ResponseRecorder recorder = context.getRecorder();
+    if(recorder != null){
+      recorder.stepProceeded(name);
+    }
     return true;
   }
 
@@ -0,0 +1,44 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step;
+
+import org.formic.wizard.WizardStep;
+
+/**
+ * Defines a headless step, run in place of a gui or console step when the
+ * installer runs unattended from a response file.
+ *
+ * @author Eric Van Dewoestine
+ */
+public interface HeadlessStep
+  extends WizardStep
+{
+  /**
+   * Invoked in place of displaying this step.
+   * <p/>
+   * Used to validate the values loaded from the response file into the
+   * install context and to perform any work the step would otherwise do once
+   * displayed.
+   *
+   * @return null if the installer can proceed to the next step, otherwise a
+   * message describing why the step's values are not valid.
+   */
+  public String process()
+    throws Exception;
+}
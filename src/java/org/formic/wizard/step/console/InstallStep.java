@@ -38,12 +38,14 @@ import charvax.swing.border.TitledBorder;
 
 import org.formic.Installer;
 
+import org.formic.util.ByteProgress;
+
 import org.formic.util.dialog.console.ConsoleDialogs;
 
 import org.formic.wizard.step.AbstractConsoleStep;
 
 import org.formic.wizard.step.shared.InstallAction;
-import org.formic.wizard.step.shared.InstallAction.InstallListener;
+import org.formic.wizard.step.shared.InstallAction.ProgressListener;
 
 /**
  * Step that runs the background install process and displays the progress for
@@ -53,7 +55,7 @@ import org.formic.wizard.step.shared.InstallAction.InstallListener;
  */
 public class InstallStep
   extends AbstractConsoleStep
-  implements InstallListener
+  implements ProgressListener
 {
   protected JProgressBar overallProgress;
   protected JProgressBar taskProgress;
@@ -192,7 +194,7 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#installStarted(int)
+   * @see ProgressListener#installStarted(int)
    */
   public void installStarted(int tasks)
   {
@@ -202,7 +204,7 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#taskStarted(String)
+   * @see ProgressListener#taskStarted(String)
    */
   public void taskStarted(String info)
   {
@@ -211,7 +213,7 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#taskFinished(int)
+   * @see ProgressListener#taskFinished(int)
    */
   public void taskFinished(int index)
   {
@@ -220,13 +222,34 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#messageLogged(String)
+   * @see ProgressListener#messageLogged(String)
    */
   public void messageLogged(String message)
   {
     taskLabel.setText(message);
   }
 
+  /**
+   * {@inheritDoc}
+   * @see ProgressListener#taskProgress(ByteProgress)
+   */
+  public void taskProgress(ByteProgress progress)
+  {
+    if(progress.isFinished()){
+      taskProgress.setString("");
+      taskProgress.setIndeterminate(true);
+      return;
+    }
+
+    int percent = progress.getPercent();
+    taskProgress.setIndeterminate(percent < 0);
+    if(percent >= 0){
+      taskProgress.setMaximum(100);
+      taskProgress.setValue(percent);
+    }
+    taskProgress.setString(InstallAction.getProgressText(progress));
+  }
+
   private class ShowErrorAction
     extends AbstractAction
   {
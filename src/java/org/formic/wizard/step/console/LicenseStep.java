@@ -173,4 +173,18 @@ public class LicenseStep
   {
     scrollPane.requestFocus();
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Stores the acceptance (ex. license.accept=true), which is only possible
+   * once accepted, so that a recorded session can be replayed unattended.
+   *
+   * @see org.formic.wizard.WizardStep#proceed()
+   */
+  public boolean proceed()
+  {
+    Installer.getContext().setValue(fieldName("accept"), Boolean.TRUE);
+    return super.proceed();
+  }
 }
@@ -27,36 +27,38 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.Properties;
 
 import javax.swing.JCheckBox;
 import javax.swing.JEditorPane;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+
 import org.apache.commons.lang.StringUtils;
 
 import org.formic.Installer;
 
 import org.formic.util.event.gui.HyperlinkListener;
 
-import org.formic.util.swing.ComponentTableCellRenderer;
-
 import org.formic.wizard.form.GuiForm;
 
 import org.formic.wizard.step.AbstractGuiStep;
 
 import org.formic.wizard.step.shared.Feature;
+import org.formic.wizard.step.shared.FeatureGraph;
 import org.formic.wizard.step.shared.FeatureProvider;
 
 /**
@@ -73,6 +75,11 @@ import org.formic.wizard.step.shared.FeatureProvider;
  *     <td>Implementation of {@link FeatureProvider}.</td>
  *     <td>true</td><td>&nbsp;</td><td>none</td>
  *   </tr>
+ *   <tr>
+ *     <td>filter</td>
+ *     <td>Whether to display a field used to filter the feature list.</td>
+ *     <td>false</td><td>true, false</td><td>false</td>
+ *   </tr>
  * </table>
  *
  * @author Eric Van Dewoestine
@@ -81,10 +88,13 @@ public class FeatureListStep
   extends AbstractGuiStep
 {
   private static final String PROVIDER = "provider";
+  private static final String FILTER = "filter";
 
   private FeatureProvider provider;
   private JEditorPane featureInfo;
-  private Map featureMap = new HashMap();
+  private GuiForm form;
+  private FeatureGraph graph;
+  private FeatureTableModel model;
 
   /**
    * Constructs the step.
@@ -93,23 +103,7 @@ public class FeatureListStep
   {
     super(name, properties);
 
-    String provider = getProperty(PROVIDER);
-    if(provider == null){
-      throw new IllegalArgumentException(
-          Installer.getString(PROPERTY_REQUIRED, PROVIDER, getName()));
-    }
-
-    try{
-      this.provider = (FeatureProvider)Class.forName(provider).newInstance();
-    }catch(ClassCastException cce){
-      throw new IllegalArgumentException(Installer.getString(
-            PROPERTY_TYPE_INVALID, PROVIDER, FeatureProvider.class.getName()));
-    }catch(ClassNotFoundException cnfe){
-      throw new IllegalArgumentException(Installer.getString(
-            PROPERTY_CLASS_NOT_FOUND, PROVIDER, provider));
-    }catch(Exception e){
-      throw new RuntimeException(e);
-    }
+    provider = (FeatureProvider)newInstance(PROVIDER, FeatureProvider.class);
   }
 
   /**
@@ -123,81 +117,64 @@ public class FeatureListStep
     featureInfo.addHyperlinkListener(new HyperlinkListener());
 
     Feature[] features = provider.getFeatures();
-    JTable table = new JTable(features.length, 1){
-      private static final long serialVersionUID = 1L;
-      public Class getColumnClass(int column){
-        return getValueAt(0, column).getClass();
-      }
-      public boolean isCellEditable(int row, int column){
-        return false;
-      }
-    };
-    table.setBackground(new javax.swing.JList().getBackground());
-
-    GuiForm form = createForm();
-
-    for (int ii = 0; ii < features.length; ii++){
-      final Feature feature = (Feature)features[ii];
-      final JCheckBox box = new JCheckBox();
-
-      String name = getName() + '.' + feature.getKey();
-      form.bind(name, box);
+    graph = new FeatureGraph(features);
+    model = new FeatureTableModel(features);
 
-      box.putClientProperty("feature", feature);
-      featureMap.put(feature.getKey(), box);
-
-      if (feature.getInfo() == null){
-        feature.setInfo(Installer.getString(
-              getName() + "." + feature.getKey() + ".html"));
-      }
-      feature.addPropertyChangeListener(new PropertyChangeListener(){
-        public void propertyChange(PropertyChangeEvent event){
-          if(Feature.ENABLED_PROPERTY.equals(event.getPropertyName())){
-            if(box.isSelected() != feature.isEnabled()){
-              box.setSelected(feature.isEnabled());
-            }
-          }
-        }
-      });
-
-      box.setText(Installer.getString(name));
-      box.setBackground(table.getBackground());
-      if (!feature.isAvailable()){
-        box.setSelected(false);
-        box.setEnabled(false);
-      }
-      table.setValueAt(box, ii, 0);
-    }
+    final JTable table = new JTable(model);
+    table.setBackground(new javax.swing.JList().getBackground());
 
-    FeatureListMouseListener mouseListener = new FeatureListMouseListener();
+    form = createForm();
     for (int ii = 0; ii < features.length; ii++){
-      Feature feature = (Feature)features[ii];
-      if(feature.isEnabled() && feature.isAvailable()){
-        JCheckBox box = (JCheckBox)featureMap.get(feature.getKey());
-        box.setSelected(true);
-        mouseListener.processDependencies(feature);
-        mouseListener.processExclusives(feature);
-      }
+      updateValue(features[ii]);
     }
 
     table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
     table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
     table.setShowHorizontalLines(false);
     table.setShowVerticalLines(false);
-    table.setDefaultRenderer(JCheckBox.class, new ComponentTableCellRenderer());
+    table.setDefaultRenderer(Feature.class, new FeatureCellRenderer());
 
     table.addKeyListener(new FeatureListKeyListener());
-    table.addMouseListener(mouseListener);
+    table.addMouseListener(new FeatureListMouseListener());
     table.getSelectionModel().addListSelectionListener(
         new FeatureListSelectionListener(table));
 
-    table.setRowSelectionInterval(0, 0);
+    if (table.getRowCount() > 0){
+      table.setRowSelectionInterval(0, 0);
+    }
 
     JPanel panel = new JPanel();
     panel.setLayout(new BorderLayout());
     JPanel container = new JPanel(new BorderLayout());
     container.add(table, BorderLayout.CENTER);
     panel.add(new JScrollPane(container), BorderLayout.CENTER);
+    if (Boolean.valueOf(getProperty(FILTER)).booleanValue()){
+      final JTextField filter = new JTextField();
+      filter.getDocument().addDocumentListener(new DocumentListener(){
+        public void insertUpdate(DocumentEvent e){
+          filter();
+        }
+        public void removeUpdate(DocumentEvent e){
+          filter();
+        }
+        public void changedUpdate(DocumentEvent e){
+        }
+        private void filter(){
+          model.setFilter(filter.getText());
+          if (table.getRowCount() > 0){
+            table.setRowSelectionInterval(0, 0);
+          }else{
+            featureInfo.setText(StringUtils.EMPTY);
+          }
+        }
+      });
+      JPanel filterPanel = new JPanel(new BorderLayout());
+      filterPanel.add(
+          new JLabel(Installer.getString("featureList.filter") + ' '),
+          BorderLayout.WEST);
+      filterPanel.add(filter, BorderLayout.CENTER);
+      panel.add(filterPanel, BorderLayout.NORTH);
+    }
     JScrollPane infoScroll = new JScrollPane(featureInfo);
     infoScroll.setMinimumSize(new Dimension(0, 50));
     infoScroll.setMaximumSize(new Dimension(0, 50));
@@ -207,101 +184,41 @@ public class FeatureListStep
     return panel;
   }
 
-  private class FeatureListListener
+  /**
+   * Updates the form value for the supplied feature.
+   *
+   * @param feature The feature.
+   */
+  private void updateValue(Feature feature)
   {
-    protected void toggleSelection(JTable table, int row)
-    {
-      JCheckBox box = (JCheckBox)table.getModel().getValueAt(row, 0);
-      Feature feature = (Feature)box.getClientProperty("feature");
-      if (feature.isAvailable()){
-        box.doClick();
-        feature.setEnabled(box.isSelected());
-
-        processDependencies(feature);
-        processExclusives(feature);
-
-        table.revalidate();
-        table.repaint();
-      }
-    }
-
-    protected void processDependencies(Feature feature)
-    {
-      String[] dependencies = feature.getDependencies();
-      if (dependencies == null){
-        return;
-      }
+    form.setValue(getName() + '.' + feature.getKey(),
+        Boolean.valueOf(isSelected(feature)));
+  }
 
-      for(int ii = 0; ii < dependencies.length; ii++){
-        String key = dependencies[ii];
-        JCheckBox box = (JCheckBox)featureMap.get(key);
-        // feature may have been excluded from the list by the provider
-        if (box == null){
-          continue;
-        }
-        if(feature.isEnabled()){
-          box.setEnabled(false);
-          box.setSelected(true);
-          Feature dfeature = (Feature)box.getClientProperty("feature");
-          if(!dfeature.isEnabled()){
-            dfeature.setEnabled(true);
-            processDependencies(dfeature);
-            processExclusives(dfeature);
-          }
-        }else{
-          // check if any other enabled feature has this as a dependency
-          boolean required = false;
-          Feature[] features = provider.getFeatures();
-          for(int jj = 0; jj < features.length; jj++){
-            JCheckBox fbox = (JCheckBox)featureMap.get(features[jj].getKey());
-            Feature f = (Feature)fbox.getClientProperty("feature");
-            if (f.isEnabled() && f.hasDependency(key)){
-              required = true;
-              break;
-            }
-          }
-          box.setEnabled(!required);
-        }
-      }
-    }
+  /**
+   * Determines if the supplied feature is selected for install.
+   *
+   * @param feature The feature.
+   * @return true if selected, false otherwise.
+   */
+  private static boolean isSelected(Feature feature)
+  {
+    return feature.isEnabled() && feature.isAvailable();
+  }
 
-    protected void processExclusives(Feature feature)
+  private class FeatureListListener
+  {
+    protected void toggleSelection(JTable table, int row)
     {
-      String[] exclusives = feature.getExclusives();
-      if (exclusives == null){
-        return;
-      }
-
-      for(int ii = 0; ii < exclusives.length; ii++){
-        String key = exclusives[ii];
-        JCheckBox box = (JCheckBox)featureMap.get(key);
-        // feature may have been excluded from the list by the provider
-        if (box == null){
-          continue;
-        }
-        if(feature.isEnabled()){
-          box.setEnabled(false);
-          box.setSelected(false);
-          Feature efeature = (Feature)box.getClientProperty("feature");
-          if(efeature.isEnabled()){
-            efeature.setEnabled(false);
-            processDependencies(efeature);
-            processExclusives(efeature);
-          }
-        }else{
-          // check if any other enabled feature has this in its exclusive list
-          boolean exclusive = false;
-          Feature[] features = provider.getFeatures();
-          for(int jj = 0; jj < features.length; jj++){
-            JCheckBox fbox = (JCheckBox)featureMap.get(features[jj].getKey());
-            Feature f = (Feature)fbox.getClientProperty("feature");
-            if (f.isEnabled() && f.hasExclusive(key)){
-              exclusive = true;
-              break;
-            }
-          }
-          box.setEnabled(!exclusive);
+      Feature feature = model.getFeature(row);
+      if (!graph.isLocked(feature)){
+        // only the features reachable from the toggled one can change.
+        Iterator changed =
+          graph.setEnabled(feature, !feature.isEnabled()).iterator();
+        while (changed.hasNext()){
+          updateValue((Feature)changed.next());
         }
+        model.fireTableRowsUpdated(0, model.getRowCount() - 1);
       }
     }
   }
@@ -428,12 +345,184 @@ public class FeatureListStep
      */
     public void valueChanged(ListSelectionEvent e)
     {
-      if(!e.getValueIsAdjusting()){
-        JCheckBox box = (JCheckBox)
-          table.getModel().getValueAt(table.getSelectedRow(), 0);
-        Feature feature = (Feature)box.getClientProperty("feature");
+      int row = table.getSelectedRow();
+      if(!e.getValueIsAdjusting() && row != -1){
+        Feature feature = model.getFeature(row);
+        if (feature.getInfo() == null){
+          feature.setInfo(Installer.getString(
+                getName() + "." + feature.getKey() + ".html"));
+        }
         featureInfo.setText(feature.getInfo());
       }
     }
   }
+
+  /**
+   * Table model over the features which displays those matching the current
+   * filter.  Feature labels are only looked up once needed.
+   */
+  private class FeatureTableModel
+    extends AbstractTableModel
+  {
+    private static final long serialVersionUID = 1L;
+
+    private Feature[] features;
+    private String[] labels;
+    private String[] searchLabels;
+    private int[] rows;
+    private int count;
+    private String filter = StringUtils.EMPTY;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param features The features.
+     */
+    public FeatureTableModel(Feature[] features)
+    {
+      this.features = features;
+      labels = new String[features.length];
+      rows = new int[features.length];
+      count = features.length;
+      for (int ii = 0; ii < count; ii++){
+        rows[ii] = ii;
+      }
+    }
+
+    /**
+     * Gets the feature displayed at the supplied row.
+     *
+     * @param row The row.
+     * @return The feature.
+     */
+    public Feature getFeature(int row)
+    {
+      return features[rows[row]];
+    }
+
+    /**
+     * Gets the label for the feature displayed at the supplied row.
+     *
+     * @param row The row.
+     * @return The label.
+     */
+    public String getLabel(int row)
+    {
+      return getLabelAt(rows[row]);
+    }
+
+    /**
+     * Filters the features to those whose label or key contains the supplied
+     * text, ignoring case.  When the text extends the current filter, only
+     * the features currently displayed are examined.
+     *
+     * @param text The filter text.
+     */
+    public void setFilter(String text)
+    {
+      text = text.trim().toLowerCase();
+      if (text.equals(filter)){
+        return;
+      }
+
+      if (searchLabels == null){
+        searchLabels = new String[features.length];
+        for (int ii = 0; ii < features.length; ii++){
+          searchLabels[ii] = (getLabelAt(ii) + ' ' + features[ii].getKey())
+            .toLowerCase();
+        }
+      }
+
+      if (text.startsWith(filter)){
+        int matched = 0;
+        for (int ii = 0; ii < count; ii++){
+          if (searchLabels[rows[ii]].indexOf(text) != -1){
+            rows[matched++] = rows[ii];
+          }
+        }
+        count = matched;
+      }else{
+        count = 0;
+        for (int ii = 0; ii < features.length; ii++){
+          if (searchLabels[ii].indexOf(text) != -1){
+            rows[count++] = ii;
+          }
+        }
+      }
+      filter = text;
+      fireTableDataChanged();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see javax.swing.table.TableModel#getRowCount()
+     */
+    public int getRowCount()
+    {
+      return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see javax.swing.table.TableModel#getColumnCount()
+     */
+    public int getColumnCount()
+    {
+      return 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see javax.swing.table.TableModel#getColumnClass(int)
+     */
+    public Class getColumnClass(int column)
+    {
+      return Feature.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see javax.swing.table.TableModel#getValueAt(int,int)
+     */
+    public Object getValueAt(int row, int column)
+    {
+      return getFeature(row);
+    }
+
+    private String getLabelAt(int index)
+    {
+      if (labels[index] == null){
+        labels[index] = Installer.getString(
+            getName() + '.' + features[index].getKey());
+      }
+      return labels[index];
+    }
+  }
+
+  /**
+   * Renders every feature row with a single shared check box.
+   */
+  private class FeatureCellRenderer
+    implements TableCellRenderer
+  {
+    private JCheckBox box = new JCheckBox();
+
+    /**
+     * {@inheritDoc}
+     * @see TableCellRenderer#getTableCellRendererComponent(JTable,Object,boolean,boolean,int,int)
+     */
+    public Component getTableCellRendererComponent(
+        JTable table, Object value,
+        boolean isSelected, boolean hasFocus,
+        int row, int column)
+    {
+      Feature feature = (Feature)value;
+      box.setText(model.getLabel(row));
+      box.setSelected(FeatureListStep.isSelected(feature));
+      box.setEnabled(!graph.isLocked(feature));
+      box.setBackground(isSelected ?
+          table.getSelectionBackground() : table.getBackground());
+      return box;
+    }
+  }
 }
@@ -48,12 +48,14 @@ import foxtrot.Worker;
 
 import org.formic.Installer;
 
+import org.formic.util.ByteProgress;
+
 import org.formic.util.dialog.gui.GuiDialogs;
 
 import org.formic.wizard.step.AbstractGuiStep;
 
 import org.formic.wizard.step.shared.InstallAction;
-import org.formic.wizard.step.shared.InstallAction.InstallListener;
+import org.formic.wizard.step.shared.InstallAction.ProgressListener;
 
 /**
  * Step that runs the background install process and displays the progress for
@@ -63,7 +65,7 @@ import org.formic.wizard.step.shared.InstallAction.InstallListener;
  */
 public class InstallStep
   extends AbstractGuiStep
-  implements InstallListener
+  implements ProgressListener
 {
   protected JProgressBar overallProgress;
   protected JProgressBar taskProgress;
@@ -214,7 +216,7 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#installStarted(int)
+   * @see ProgressListener#installStarted(int)
    */
   public void installStarted(int tasks)
   {
@@ -224,7 +226,7 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#taskStarted(String)
+   * @see ProgressListener#taskStarted(String)
    */
   public void taskStarted(String info)
   {
@@ -233,7 +235,7 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#taskFinished(int)
+   * @see ProgressListener#taskFinished(int)
    */
   public void taskFinished(int index)
   {
@@ -242,13 +244,34 @@ public class InstallStep
 
   /**
    * {@inheritDoc}
-   * @see InstallListener#messageLogged(String)
+   * @see ProgressListener#messageLogged(String)
    */
   public void messageLogged(String message)
   {
     taskLabel.setText(message);
   }
 
+  /**
+   * {@inheritDoc}
+   * @see ProgressListener#taskProgress(ByteProgress)
+   */
+  public void taskProgress(ByteProgress progress)
+  {
+    if(progress.isFinished()){
+      taskProgress.setString(null);
+      taskProgress.setIndeterminate(true);
+      return;
+    }
+
+    int percent = progress.getPercent();
+    taskProgress.setIndeterminate(percent < 0);
+    if(percent >= 0){
+      taskProgress.setMaximum(100);
+      taskProgress.setValue(percent);
+    }
+    taskProgress.setString(InstallAction.getProgressText(progress));
+  }
+
   private class ShowErrorAction
     extends AbstractAction
   {
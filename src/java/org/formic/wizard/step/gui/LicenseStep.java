@@ -156,4 +156,18 @@ public class LicenseStep
   {
     ((JComponent)scrollPane.getViewport().getView()).grabFocus();
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Stores the acceptance (ex. license.accept=true), which is only possible
+   * once accepted, so that a recorded session can be replayed unattended.
+   *
+   * @see org.formic.wizard.WizardStep#proceed()
+   */
+  public boolean proceed()
+  {
+    Installer.getContext().setValue(fieldName("accept"), Boolean.TRUE);
+    return super.proceed();
+  }
 }
@@ -24,6 +24,8 @@ import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import javax.swing.ImageIcon;
@@ -61,6 +63,8 @@ import org.formic.wizard.form.GuiForm;
 
 import org.formic.wizard.step.AbstractGuiStep;
 
+import org.formic.wizard.step.shared.RequirementsValidation;
+
 /**
  * Step which validates set of requirements.
  * <p/>
@@ -75,6 +79,24 @@ import org.formic.wizard.step.AbstractGuiStep;
  *     <td>Implementation of {@link RequirementProvider}.</td>
  *     <td>true</td><td>&nbsp;</td><td>none</td>
  *   </tr>
+ *   <tr>
+ *     <td>threads</td>
+ *     <td>Maximum number of requirements to validate concurrently.</td>
+ *     <td>false</td><td>&nbsp;</td><td>4</td>
+ *   </tr>
+ *   <tr>
+ *     <td>timeout</td>
+ *     <td>
+ *       Number of seconds to wait for a requirement to be validated
+ *       (0 to wait indefinitely).
+ *     </td>
+ *     <td>false</td><td>&nbsp;</td><td>30</td>
+ *   </tr>
+ *   <tr>
+ *     <td>timeout.status</td>
+ *     <td>Status of a requirement whose validation timed out.</td>
+ *     <td>false</td><td>warn, fail</td><td>warn</td>
+ *   </tr>
  * </table>
  *
  * @author Eric Van Dewoestine
@@ -89,6 +111,7 @@ public class RequirementsValidationStep
   protected static final String PROVIDER = "provider";
 
   private RequirementProvider provider;
+  private RequirementsValidation validation;
 
   private GuiForm form;
   private JEditorPane requirementInfo;
@@ -107,23 +130,9 @@ public class RequirementsValidationStep
   {
     super(name, properties);
 
-    String provider = getProperty(PROVIDER);
-    if(provider == null){
-      throw new IllegalArgumentException(
-          Installer.getString(PROPERTY_REQUIRED, PROVIDER, getName()));
-    }
-
-    try{
-      this.provider = (RequirementProvider)Class.forName(provider).newInstance();
-    }catch(ClassCastException cce){
-      throw new IllegalArgumentException(Installer.getString(
-            PROPERTY_TYPE_INVALID, PROVIDER, RequirementProvider.class.getName()));
-    }catch(ClassNotFoundException cnfe){
-      throw new IllegalArgumentException(Installer.getString(
-            PROPERTY_CLASS_NOT_FOUND, PROVIDER, provider));
-    }catch(Exception e){
-      throw new RuntimeException(e);
-    }
+    provider = (RequirementProvider)
+      newInstance(PROVIDER, RequirementProvider.class);
+    validation = new RequirementsValidation(provider, this);
   }
 
   /**
@@ -168,7 +177,7 @@ public class RequirementsValidationStep
     retryButton.setVisible(false);
     retryButton.addActionListener(new ActionListener(){
       public void actionPerformed(ActionEvent e){
-        displayed();
+        validate(true);
       }
     });
 
@@ -215,6 +224,18 @@ public class RequirementsValidationStep
    * @see org.formic.wizard.WizardStep#displayed()
    */
   public void displayed()
+  {
+    validate(false);
+  }
+
+  /**
+   * Validates the requirements, concurrently, updating each requirement's
+   * row as its validation completes.
+   *
+   * @param retry true to only validate the requirements which failed on the
+   * previous run, false to validate all requirements.
+   */
+  private void validate(final boolean retry)
   {
     form.showInfoMessage(null);
     requirementInfo.setText(null);
@@ -226,46 +247,49 @@ public class RequirementsValidationStep
         public Object run()
           throws Exception
         {
-          Integer result = OK;
           TableModel model = table.getModel();
+          final List rows = new ArrayList();
+          List requirements = new ArrayList();
           for (int ii = 0; ii < model.getRowCount(); ii++){
-            final JLabel label = (JLabel)model.getValueAt(ii, 1);
-            SwingUtilities.invokeLater(new Runnable(){
-              public void run(){
-                label.setIcon(busyIcon);
-                busyIcon.setImageObserver(table);
-                table.revalidate();
-                table.repaint();
-              }
-            });
             Requirement requirement = (Requirement)model.getValueAt(ii, 0);
-            final RequirementProvider.Status status =
-              provider.validate(requirement);
-            requirement.setStatus(status);
-            if(status.getCode() == RequirementProvider.FAIL){
-              result = FAIL;
-            }else if(OK.equals(result) &&
-                status.getCode() == RequirementProvider.WARN)
+            RequirementProvider.Status status = requirement.getStatus();
+            if(!retry || status == null ||
+                status.getCode() == RequirementProvider.FAIL)
             {
-              result = WARN;
+              rows.add(new Integer(ii));
+              requirements.add(requirement);
+              setIcon(ii, busyIcon);
             }
+          }
 
-            SwingUtilities.invokeLater(new Runnable(){
-              public void run(){
-                switch(status.getCode()){
-                  case RequirementProvider.OK:
-                    label.setIcon(okIcon);
-                    break;
-                  case RequirementProvider.WARN:
-                    label.setIcon(warnIcon);
-                    break;
-                  default:
-                    label.setIcon(failedIcon);
+          validation.validate(
+              (Requirement[])requirements.toArray(
+                new Requirement[requirements.size()]),
+              new RequirementsValidation.Listener(){
+                public void completed(int index, Requirement requirement){
+                  int row = ((Integer)rows.get(index)).intValue();
+                  switch(requirement.getStatus().getCode()){
+                    case RequirementProvider.OK:
+                      setIcon(row, okIcon);
+                      break;
+                    case RequirementProvider.WARN:
+                      setIcon(row, warnIcon);
+                      break;
+                    default:
+                      setIcon(row, failedIcon);
+                  }
                 }
-                table.revalidate();
-                table.repaint();
-              }
-            });
+              });
+
+          Integer result = OK;
+          for (int ii = 0; ii < model.getRowCount(); ii++){
+            Requirement requirement = (Requirement)model.getValueAt(ii, 0);
+            int code = requirement.getStatus().getCode();
+            if(code == RequirementProvider.FAIL){
+              result = FAIL;
+            }else if(OK.equals(result) && code == RequirementProvider.WARN){
+              result = WARN;
+            }
           }
           return result;
         }
@@ -291,6 +315,27 @@ public class RequirementsValidationStep
     }
   }
 
+  /**
+   * Sets the status icon for the requirement at the supplied row.
+   *
+   * @param row The row.
+   * @param icon The icon.
+   */
+  private void setIcon(int row, final ImageIcon icon)
+  {
+    final JLabel label = (JLabel)table.getModel().getValueAt(row, 1);
+    SwingUtilities.invokeLater(new Runnable(){
+      public void run(){
+        label.setIcon(icon);
+        if(icon == busyIcon){
+          busyIcon.setImageObserver(table);
+        }
+        table.revalidate();
+        table.repaint();
+      }
+    });
+  }
+
   /**
    * {@inheritDoc}
    * @see org.formic.wizard.WizardStep#isBusyAnimated()
@@ -451,6 +496,9 @@ public class RequirementsValidationStep
      * either {@link #OK}, {@link #WARN}, or {@link #FAIL} depending on whether
      * the requirement was satisfied, not satisfied but can be ignores, or not
      * satisified and installer must not proceed.
+     * <p/>
+     * Requirements are validated concurrently, so this method may be invoked
+     * by several threads at once for different requirements.
      *
      * @param requirement The requirement to validate.
      * @return The status of the validation.
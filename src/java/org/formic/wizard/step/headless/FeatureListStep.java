@@ -0,0 +1,131 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step.headless;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.formic.Installer;
+
+import org.formic.wizard.step.AbstractHeadlessStep;
+
+import org.formic.wizard.step.shared.Feature;
+import org.formic.wizard.step.shared.FeatureGraph;
+import org.formic.wizard.step.shared.FeatureProvider;
+
+/**
+ * Step which applies the feature selections supplied by the response file
+ * (ex. <code>featureList.docs=false</code>) on top of the provider's
+ * defaults, enforcing the same dependencies and exclusions as the gui step.
+ * <p/>
+ * <b>Properties</b>
+ * <table class="properties">
+ *   <tr>
+ *     <th>Name</th><th>Description</th>
+ *     <th>Required</th><th>Possible Values</th><th>Default</th>
+ *   </tr>
+ *   <tr>
+ *     <td>provider</td>
+ *     <td>Implementation of {@link FeatureProvider}.</td>
+ *     <td>true</td><td>&nbsp;</td><td>none</td>
+ *   </tr>
+ * </table>
+ *
+ * @author Eric Van Dewoestine
+ */
+public class FeatureListStep
+  extends AbstractHeadlessStep
+{
+  private static final String PROVIDER = "provider";
+
+  private FeatureProvider provider;
+
+  /**
+   * Constructs the step.
+   */
+  public FeatureListStep(String name, Properties properties)
+  {
+    super(name, properties);
+
+    provider = (FeatureProvider)newInstance(PROVIDER, FeatureProvider.class);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see org.formic.wizard.step.HeadlessStep#process()
+   */
+  public String process()
+  {
+    Feature[] features = provider.getFeatures();
+    FeatureGraph graph = new FeatureGraph(features);
+
+    Map requested = new LinkedHashMap();
+    for (int ii = 0; ii < features.length; ii++){
+      Object value = getValue(features[ii].getKey());
+      if(value != null){
+        requested.put(features[ii],
+            Boolean.valueOf("true".equalsIgnoreCase(value.toString().trim())));
+      }
+    }
+
+    // toggling one feature may unlock another (ex. deselecting a dependent
+    // before its dependency), so repeat until the selections settle.
+    boolean changed = true;
+    for (int pass = 0; changed && pass <= features.length; pass++){
+      changed = false;
+      for (Iterator ii = requested.entrySet().iterator(); ii.hasNext();){
+        Map.Entry entry = (Map.Entry)ii.next();
+        Feature feature = (Feature)entry.getKey();
+        boolean selected = ((Boolean)entry.getValue()).booleanValue();
+        if(isSelected(feature) != selected && !graph.isLocked(feature)){
+          graph.setEnabled(feature, selected);
+          changed = true;
+        }
+      }
+    }
+
+    for (Iterator ii = requested.entrySet().iterator(); ii.hasNext();){
+      Map.Entry entry = (Map.Entry)ii.next();
+      Feature feature = (Feature)entry.getKey();
+      if(isSelected(feature) != ((Boolean)entry.getValue()).booleanValue()){
+        return Installer.getString("featureList.invalid",
+            feature.getKey(), entry.getValue());
+      }
+    }
+
+    for (int ii = 0; ii < features.length; ii++){
+      setValue(features[ii].getKey(),
+          Boolean.valueOf(isSelected(features[ii])));
+    }
+    return null;
+  }
+
+  /**
+   * Determines if the supplied feature is selected for install.
+   *
+   * @param feature The feature.
+   * @return true if selected, false otherwise.
+   */
+  private static boolean isSelected(Feature feature)
+  {
+    return feature.isEnabled() && feature.isAvailable();
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step.headless;
+
+import java.util.Properties;
+
+import org.formic.wizard.form.shared.Discoverer;
+
+import org.formic.wizard.form.validator.ValidatorBuilder;
+
+import org.formic.wizard.step.AbstractHeadlessStep;
+
+/**
+ * Step which validates the install location supplied by the response file,
+ * falling back to the configured discoverer when none was supplied.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class InstallLocationStep
+  extends AbstractHeadlessStep
+{
+  private static final String LOCATION = "location";
+
+  /**
+   * Constructs the step.
+   */
+  public InstallLocationStep(String name, Properties properties)
+  {
+    super(name, properties);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see org.formic.wizard.step.HeadlessStep#process()
+   */
+  public String process()
+  {
+    Object location = getValue(LOCATION);
+    if(location == null || location.toString().trim().length() == 0){
+      String discoverer = getProperty("discoverer");
+      if(discoverer != null){
+        location = Discoverer.discover(discoverer);
+        if(location != null){
+          setValue(LOCATION, location);
+        }
+      }
+    }
+    return validate(LOCATION, new ValidatorBuilder().required().validator());
+  }
+}
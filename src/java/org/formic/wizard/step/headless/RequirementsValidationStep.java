@@ -0,0 +1,97 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step.headless;
+
+import java.util.Properties;
+
+import org.formic.Installer;
+
+import org.formic.wizard.step.AbstractHeadlessStep;
+
+import org.formic.wizard.step.gui.RequirementsValidationStep.Requirement;
+import org.formic.wizard.step.gui.RequirementsValidationStep.RequirementProvider;
+
+import org.formic.wizard.step.shared.RequirementsValidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Step which validates set of requirements, logging any requirement which
+ * could not be determined and failing if any requirement is not satisfied.
+ * <p/>
+ * Accepts the same properties as the gui
+ * {@link org.formic.wizard.step.gui.RequirementsValidationStep}.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class RequirementsValidationStep
+  extends AbstractHeadlessStep
+{
+  private static final Logger logger =
+    LoggerFactory.getLogger(RequirementsValidationStep.class);
+
+  protected static final String PROVIDER = "provider";
+
+  private RequirementProvider provider;
+  private RequirementsValidation validation;
+
+  /**
+   * Constructs the step.
+   */
+  public RequirementsValidationStep(String name, Properties properties)
+  {
+    super(name, properties);
+
+    provider = (RequirementProvider)
+      newInstance(PROVIDER, RequirementProvider.class);
+    validation = new RequirementsValidation(provider, this);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see org.formic.wizard.step.HeadlessStep#process()
+   */
+  public String process()
+    throws Exception
+  {
+    Requirement[] requirements = provider.getRequirements();
+    validation.validate(requirements, null);
+
+    String failed = null;
+    for (int ii = 0; ii < requirements.length; ii++){
+      Requirement requirement = requirements[ii];
+      RequirementProvider.Status status = requirement.getStatus();
+      String title = Installer.getStringOrDefault(
+          getName() + '.' + requirement.getKey(), requirement.getKey());
+      if(status.getCode() == RequirementProvider.FAIL){
+        String message = Installer.getString(
+            "requirements.headless.failed", title, status.getMessage());
+        logger.error(message);
+        failed = failed != null ? failed : message;
+      }else if(status.getCode() == RequirementProvider.WARN){
+        logger.warn(Installer.getString(
+              "requirements.headless.warning", title, status.getMessage()));
+      }else{
+        logger.info(title + ": OK");
+      }
+    }
+    return failed;
+  }
+}
@@ -21,6 +21,8 @@ package org.formic.wizard.step.shared;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 
+import org.formic.Installer;
+
 /**
  * Represents an available feature.
  *
@@ -89,6 +91,21 @@ public class Feature
     this.exclusives = exclusives;
   }
 
+  /**
+   * Determines if the feature whose selection state is stored in the install
+   * context under the supplied key (ex. featureList.myfeature) was explicitly
+   * deselected.  Features never presented to the user are not considered
+   * deselected.
+   *
+   * @param key The install context key of the feature.
+   * @return true if the feature was deselected, false otherwise.
+   */
+  public static boolean isDeselected(String key)
+  {
+    Object value = Installer.getContext().getValue(key);
+    return value != null && "false".equalsIgnoreCase(value.toString());
+  }
+
   /**
    * Gets the key for this feature.
    *
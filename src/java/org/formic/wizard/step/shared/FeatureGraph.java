@@ -0,0 +1,309 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step.shared;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the dependencies and exclusions between a set of features, used
+ * to propagate the selection or deselection of a feature.
+ * <p/>
+ * Dependency and exclusion keys are resolved to their features once, and a
+ * count is kept, per feature, of the selected features which require or
+ * exclude it.  Changing the selection of a feature therefore only visits the
+ * features affected by the change.  A feature is active when it is both
+ * enabled and available; only active features contribute to the counts.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class FeatureGraph
+{
+  private static final Logger logger =
+    LoggerFactory.getLogger(FeatureGraph.class);
+
+  private static final Feature[] EMPTY = new Feature[0];
+
+  private Feature[] features;
+  private Map byKey = new HashMap();
+  private Map dependencies = new HashMap();
+  private Map exclusives = new HashMap();
+  private Map dependents = new HashMap();
+  private Map excluders = new HashMap();
+  private Map required = new HashMap();
+  private Map excluded = new HashMap();
+  private Set active = new HashSet();
+
+  /**
+   * Constructs a new graph over the supplied features, activating those which
+   * are enabled and available.
+   *
+   * @param features The features.
+   */
+  public FeatureGraph(Feature[] features)
+  {
+    this.features = features;
+    for (int ii = 0; ii < features.length; ii++){
+      byKey.put(features[ii].getKey(), features[ii]);
+    }
+    for (int ii = 0; ii < features.length; ii++){
+      Feature feature = features[ii];
+      dependencies.put(feature,
+          resolve(feature, feature.getDependencies(), dependents));
+      exclusives.put(feature,
+          resolve(feature, feature.getExclusives(), excluders));
+    }
+
+    List cycle = findCycle();
+    if(cycle != null){
+      logger.warn("Circular feature dependency: " + cycle);
+    }
+
+    for (int ii = 0; ii < features.length; ii++){
+      if(features[ii].isEnabled() && features[ii].isAvailable()){
+        enable(features[ii], new HashSet());
+      }
+    }
+  }
+
+  /**
+   * Gets the features in this graph.
+   *
+   * @return Array of Feature.
+   */
+  public Feature[] getFeatures()
+  {
+    return features;
+  }
+
+  /**
+   * Gets the feature with the supplied key.
+   *
+   * @param key The feature key.
+   * @return The feature or null if not found.
+   */
+  public Feature getFeature(String key)
+  {
+    return (Feature)byKey.get(key);
+  }
+
+  /**
+   * Gets the features which depend on the supplied feature.
+   *
+   * @param feature The feature.
+   * @return Array of Feature.
+   */
+  public Feature[] getDependents(Feature feature)
+  {
+    return toArray((List)dependents.get(feature));
+  }
+
+  /**
+   * Gets the features which exclude the supplied feature.
+   *
+   * @param feature The feature.
+   * @return Array of Feature.
+   */
+  public Feature[] getExcluders(Feature feature)
+  {
+    return toArray((List)excluders.get(feature));
+  }
+
+  /**
+   * Determines if the supplied feature's selection is locked because a
+   * selected feature either requires or excludes it, or because it is not
+   * available.
+   *
+   * @param feature The feature.
+   * @return true if locked, false otherwise.
+   */
+  public boolean isLocked(Feature feature)
+  {
+    return !feature.isAvailable() ||
+      count(required, feature) > 0 ||
+      count(excluded, feature) > 0;
+  }
+
+  /**
+   * Selects or deselects the supplied feature.  Selecting a feature selects
+   * its dependencies and deselects its exclusives.
+   *
+   * @param feature The feature.
+   * @param enabled true to select the feature, false to deselect it.
+   * @return Set of features whose selection or lock state may have changed.
+   */
+  public Set setEnabled(Feature feature, boolean enabled)
+  {
+    Set changed = new LinkedHashSet();
+    if(enabled){
+      enable(feature, changed);
+    }else{
+      disable(feature, changed);
+    }
+    return changed;
+  }
+
+  private void enable(Feature feature, Set changed)
+  {
+    changed.add(feature);
+    feature.setEnabled(true);
+    if(!active.add(feature)){
+      return;
+    }
+
+    Feature[] deps = (Feature[])dependencies.get(feature);
+    for (int ii = 0; ii < deps.length; ii++){
+      increment(required, deps[ii], 1);
+      changed.add(deps[ii]);
+      if(!active.contains(deps[ii])){
+        enable(deps[ii], changed);
+      }
+    }
+
+    Feature[] excl = (Feature[])exclusives.get(feature);
+    for (int ii = 0; ii < excl.length; ii++){
+      increment(excluded, excl[ii], 1);
+      changed.add(excl[ii]);
+      if(excl[ii].isEnabled()){
+        disable(excl[ii], changed);
+      }
+    }
+  }
+
+  private void disable(Feature feature, Set changed)
+  {
+    changed.add(feature);
+    feature.setEnabled(false);
+    if(!active.remove(feature)){
+      return;
+    }
+
+    Feature[] deps = (Feature[])dependencies.get(feature);
+    for (int ii = 0; ii < deps.length; ii++){
+      increment(required, deps[ii], -1);
+      changed.add(deps[ii]);
+    }
+
+    Feature[] excl = (Feature[])exclusives.get(feature);
+    for (int ii = 0; ii < excl.length; ii++){
+      increment(excluded, excl[ii], -1);
+      changed.add(excl[ii]);
+    }
+  }
+
+  /**
+   * Resolves the supplied feature keys, ignoring any not in this graph (the
+   * provider may have excluded them from the list), and records the reverse
+   * edges.
+   */
+  private Feature[] resolve(Feature feature, String[] keys, Map reverse)
+  {
+    if(keys == null || keys.length == 0){
+      return EMPTY;
+    }
+
+    List resolved = new ArrayList();
+    for (int ii = 0; ii < keys.length; ii++){
+      Feature target = (Feature)byKey.get(keys[ii]);
+      if(target != null){
+        resolved.add(target);
+        List list = (List)reverse.get(target);
+        if(list == null){
+          list = new ArrayList();
+          reverse.put(target, list);
+        }
+        list.add(feature);
+      }
+    }
+    return toArray(resolved);
+  }
+
+  /**
+   * Finds a cycle in the dependency graph, if any.
+   *
+   * @return List of feature keys forming the cycle, or null if none.
+   */
+  private List findCycle()
+  {
+    Set visited = new HashSet();
+    for (int ii = 0; ii < features.length; ii++){
+      List path = findCycle(features[ii], visited, new ArrayList());
+      if(path != null){
+        return path;
+      }
+    }
+    return null;
+  }
+
+  private List findCycle(Feature feature, Set visited, List path)
+  {
+    int index = path.indexOf(feature.getKey());
+    if(index != -1){
+      List cycle = new ArrayList(path.subList(index, path.size()));
+      cycle.add(feature.getKey());
+      return cycle;
+    }
+    if(!visited.add(feature)){
+      return null;
+    }
+
+    path.add(feature.getKey());
+    Feature[] deps = (Feature[])dependencies.get(feature);
+    for (int ii = 0; ii < deps.length; ii++){
+      List cycle = findCycle(deps[ii], visited, path);
+      if(cycle != null){
+        return cycle;
+      }
+    }
+    path.remove(path.size() - 1);
+    return null;
+  }
+
+  private static int count(Map counts, Feature feature)
+  {
+    int[] count = (int[])counts.get(feature);
+    return count != null ? count[0] : 0;
+  }
+
+  private static void increment(Map counts, Feature feature, int amount)
+  {
+    int[] count = (int[])counts.get(feature);
+    if(count == null){
+      count = new int[1];
+      counts.put(feature, count);
+    }
+    count[0] += amount;
+  }
+
+  private static Feature[] toArray(List list)
+  {
+    if(list == null){
+      return EMPTY;
+    }
+    return (Feature[])list.toArray(new Feature[list.size()]);
+  }
+}
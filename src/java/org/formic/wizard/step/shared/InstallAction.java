@@ -19,9 +19,11 @@
 package org.formic.wizard.step.shared;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-
-import java.util.regex.Pattern;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.SwingUtilities;
 
@@ -38,30 +40,46 @@ import org.apache.tools.ant.taskdefs.CallTarget;
 
 import org.formic.InstallContext;
 import org.formic.Installer;
+import org.formic.ResponseRecorder;
+
+import org.formic.ant.ParallelTargetsTask;
 
 import org.formic.ant.util.AntUtils;
 
+import org.formic.util.ByteProgress;
+
 /**
  * Action for executing the install task and monitoring its progress.
  *
  * @author Eric Van Dewoestine
  */
 public class InstallAction
-  implements BuildListener
+  implements BuildListener, ByteProgress.Listener
 {
-  private static final Pattern STACK_ELEMENT =
-    Pattern.compile("^\\s+at .*(.*)$");
+  private static final int MAX_MESSAGES = 100;
   private static ArrayList CALL_TASKS = new ArrayList();
   static{
     CALL_TASKS.add("ant");
     CALL_TASKS.add("antcall");
+    CALL_TASKS.add("paralleltargets");
   }
 
+  private static volatile InstallAction current;
+
   private Target target;
   private ArrayList tasks = new ArrayList();
-  private ArrayList targetStack = new ArrayList();
+  private Map taskIndex = new IdentityHashMap();
+  private String rootTarget;
+  private TargetStack targetStack = new TargetStack();
   private final InstallListener listener;
 
+  // state waiting to be dispatched to the listener on the event thread.
+  private boolean dispatchPending;
+  private String startedTask;
+  private int finishedIndex = -1;
+  private LinkedList messages = new LinkedList();
+  private ByteProgress progress;
+
   /**
    * Constructs a new InstallAction with the supplied InstallListener.
    *
@@ -86,7 +104,7 @@ public class InstallAction
     if (target == null){
       throw new BuildException("Task '" + taskName + "' not found.");
     }
-    targetStack.add(taskName);
+    rootTarget = taskName;
     Installer.getProject().addBuildListener(this);
     registerTasks(target.getTasks());
   }
@@ -105,8 +123,15 @@ public class InstallAction
       });
     }
 
-    // push context values into ant properties
+    // the values of a recorded session are complete once the install begins.
     InstallContext context = Installer.getContext();
+    ResponseRecorder recorder = context.getRecorder();
+    if(recorder != null){
+      recorder.write();
+      context.setRecorder(null);
+    }
+
+    // push context values into ant properties
     for (Iterator ii = context.keys(); ii.hasNext();){
       Object key = ii.next();
       Object value = context.getValue(key);
@@ -120,14 +145,112 @@ public class InstallAction
         Installer.getString("install.target.not.found"));
     }
 
+    current = this;
     try{
       Installer.getProject().executeTarget(target.getName());
       tasks.clear();
+      taskIndex.clear();
     }finally{
+      current = null;
       Installer.getProject().removeBuildListener(this);
     }
   }
 
+  /**
+   * Gets a ByteProgress.Listener which forwards byte level progress of the
+   * currently running task to the running install's listener.  Used by tasks
+   * like {@link org.formic.ant.UnzipTask} to report progress.
+   *
+   * @return The listener or null if no install is running or its listener
+   * does not support byte level progress.
+   */
+  public static ByteProgress.Listener getProgressListener()
+  {
+    InstallAction action = current;
+    if(action != null && action.listener instanceof ProgressListener){
+      return action;
+    }
+    return null;
+  }
+
+  /**
+   * Gets a copy of the calling thread's stack of executing targets, to be
+   * handed to {@link #setTargetStack(List)} by targets run on other threads
+   * (ex. by {@link ParallelTargetsTask}).
+   *
+   * @return The stack or null if no install is running.
+   */
+  public static List getTargetStack()
+  {
+    InstallAction action = current;
+    if(action != null){
+      return new ArrayList(action.targetStack.getStack());
+    }
+    return null;
+  }
+
+  /**
+   * Sets the calling thread's stack of executing targets.  Since worker
+   * threads are reused, callers must reset the stack, by passing null, once
+   * their target completes.
+   *
+   * @param stack The stack from {@link #getTargetStack()}, or null to reset
+   * the stack to the root target.
+   */
+  public static void setTargetStack(List stack)
+  {
+    InstallAction action = current;
+    if(action != null){
+      action.targetStack.setStack(stack);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * @see ByteProgress.Listener#progressUpdated(ByteProgress)
+   */
+  public void progressUpdated(ByteProgress progress)
+  {
+    synchronized(this){
+      this.progress = progress;
+      schedule();
+    }
+  }
+
+  /**
+   * Formats the supplied progress for display.
+   *
+   * @param progress The progress.
+   * @return The display text.
+   */
+  public static String getProgressText(ByteProgress progress)
+  {
+    if(progress.getUnit() == ByteProgress.ITEMS){
+      long remaining = progress.getRemainingTime();
+      Long count = new Long(progress.getBytes());
+      Long total = new Long(progress.getTotal());
+      if(remaining < 0){
+        return Installer.getString("progress.items.unknown", count, total);
+      }
+      return Installer.getString("progress.items", new Object[]{
+        count, total, ByteProgress.formatTime(remaining)
+      });
+    }
+
+    String bytes = ByteProgress.formatBytes(progress.getBytes());
+    String rate = ByteProgress.formatBytes(progress.getThroughput());
+    long remaining = progress.getRemainingTime();
+    if(progress.getTotal() < 0 || remaining < 0){
+      return Installer.getString("progress.bytes.unknown", bytes, rate);
+    }
+    return Installer.getString("progress.bytes", new Object[]{
+      bytes,
+      ByteProgress.formatBytes(progress.getTotal()),
+      rate,
+      ByteProgress.formatTime(remaining)
+    });
+  }
+
   /**
    * Register the supplied array of tasks.
    *
@@ -139,6 +262,9 @@ public class InstallAction
       Task task = tasks[ii];
 
       this.tasks.add(task);
+      if(!taskIndex.containsKey(task)){
+        taskIndex.put(task, new Integer(this.tasks.size() - 1));
+      }
 
       if(task instanceof UnknownElement){
         UnknownElement ue = (UnknownElement)task;
@@ -170,6 +296,13 @@ public class InstallAction
           Target target = (Target)project.getTargets().get(targets[jj]);
           registerTasks(target.getTasks());
         }
+      }else if (task instanceof ParallelTargetsTask){
+        // targets run in the current project, along with their dependencies.
+        List targets = ParallelTargetsTask.getTargets(task.getProject(),
+            ((ParallelTargetsTask)task).getTargetNames());
+        for (Iterator jj = targets.iterator(); jj.hasNext();){
+          registerTasks(((Target)jj.next()).getTasks());
+        }
       }
       // TODO:  For  AntCallBack, AntFetch, and RunTarget, recursively determine
       // task list.
@@ -198,7 +331,7 @@ public class InstallAction
    */
   public void targetStarted(BuildEvent e)
   {
-    targetStack.add(e.getTarget().getName());
+    targetStack.getStack().add(e.getTarget().getName());
   }
 
   /**
@@ -207,20 +340,21 @@ public class InstallAction
    */
   public void targetFinished(BuildEvent e)
   {
-    targetStack.remove(targetStack.size() - 1);
+    ArrayList stack = targetStack.getStack();
+    stack.remove(stack.size() - 1);
   }
 
   /**
    * {@inheritDoc}
    * @see BuildListener#taskStarted(BuildEvent)
    */
-  public void taskStarted(final BuildEvent e)
+  public void taskStarted(BuildEvent e)
   {
-    SwingUtilities.invokeLater(new Runnable(){
-      public void run(){
-        listener.taskStarted(getTargetPath() + " - " + e.getTask().getTaskName());
-      }
-    });
+    String info = getTargetPath() + " - " + e.getTask().getTaskName();
+    synchronized(this){
+      startedTask = info;
+      schedule();
+    }
   }
 
   /**
@@ -229,13 +363,12 @@ public class InstallAction
    */
   public void taskFinished(BuildEvent e)
   {
-    final int index = tasks.indexOf(e.getTask());
-    if(index > 0){
-      SwingUtilities.invokeLater(new Runnable(){
-        public void run(){
-          listener.taskFinished(index + 1);
-        }
-      });
+    Integer index = (Integer)taskIndex.get(e.getTask());
+    if(index != null && index.intValue() > 0){
+      synchronized(this){
+        finishedIndex = index.intValue() + 1;
+        schedule();
+      }
     }
   }
 
@@ -243,15 +376,94 @@ public class InstallAction
    * {@inheritDoc}
    * @see BuildListener#messageLogged(BuildEvent)
    */
-  public void messageLogged(final BuildEvent e)
+  public void messageLogged(BuildEvent e)
   {
-    if(!STACK_ELEMENT.matcher(e.getMessage()).matches()){
-      SwingUtilities.invokeLater(new Runnable(){
-        public void run(){
-          listener.messageLogged(e.getMessage());
+    String message = e.getMessage();
+    if(message != null && !isStackElement(message)){
+      synchronized(this){
+        messages.add(message);
+        if(messages.size() > MAX_MESSAGES){
+          messages.removeFirst();
         }
-      });
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * Queues a dispatch of the pending state to the listener unless one is
+   * already queued, in which case that dispatch will pick up the latest
+   * state.  Must be called while holding this instance's lock.
+   */
+  private void schedule()
+  {
+    if(dispatchPending || listener == null){
+      return;
+    }
+    dispatchPending = true;
+    SwingUtilities.invokeLater(new Runnable(){
+      public void run(){
+        dispatch();
+      }
+    });
+  }
+
+  /**
+   * Delivers all state accumulated since the last dispatch to the listener.
+   * Invoked on the event dispatch thread.
+   */
+  private void dispatch()
+  {
+    String started = null;
+    int finished = -1;
+    Object[] logged = null;
+    ByteProgress progress = null;
+    synchronized(this){
+      started = startedTask;
+      finished = finishedIndex;
+      logged = messages.toArray();
+      progress = this.progress;
+
+      startedTask = null;
+      finishedIndex = -1;
+      messages.clear();
+      this.progress = null;
+      dispatchPending = false;
     }
+
+    if(started != null){
+      listener.taskStarted(started);
+    }
+    for (int ii = 0; ii < logged.length; ii++){
+      listener.messageLogged((String)logged[ii]);
+    }
+    if(finished != -1){
+      listener.taskFinished(finished);
+    }
+    if(progress != null){
+      ((ProgressListener)listener).taskProgress(progress);
+    }
+  }
+
+  /**
+   * Determines if the supplied message is a single line of a stack trace
+   * (leading whitespace followed by "at ").
+   *
+   * @param message The message.
+   * @return true if the message is a stack trace element.
+   */
+  private static boolean isStackElement(String message)
+  {
+    int index = 0;
+    while(index < message.length() &&
+        Character.isWhitespace(message.charAt(index)))
+    {
+      index++;
+    }
+    return index > 0 &&
+      message.startsWith("at ", index) &&
+      message.indexOf('\n', index) == -1 &&
+      message.indexOf('\r', index) == -1;
   }
 
   /**
@@ -262,7 +474,7 @@ public class InstallAction
   private String getTargetPath()
   {
     StringBuffer buffer = new StringBuffer();
-    for (Iterator ii = targetStack.iterator(); ii.hasNext();){
+    for (Iterator ii = targetStack.getStack().iterator(); ii.hasNext();){
       if(buffer.length() != 0){
         buffer.append('/');
       }
@@ -271,6 +483,32 @@ public class InstallAction
     return buffer.toString();
   }
 
+  /**
+   * Stack of executing target names per thread.  Targets run concurrently
+   * (via {@link ParallelTargetsTask}) are handed the stack of the thread that
+   * started them through {@link #setTargetStack(List)}.
+   */
+  private class TargetStack
+    extends ThreadLocal
+  {
+    protected Object initialValue()
+    {
+      ArrayList stack = new ArrayList();
+      stack.add(rootTarget);
+      return stack;
+    }
+
+    public ArrayList getStack()
+    {
+      return (ArrayList)super.get();
+    }
+
+    public void setStack(List stack)
+    {
+      set(stack != null ? new ArrayList(stack) : initialValue());
+    }
+  }
+
   /**
    * Listener that is notified as the installation progresses.
    */
@@ -284,4 +522,21 @@ public class InstallAction
 
     public void messageLogged(String message);
   }
+
+  /**
+   * Extension of InstallListener for listeners which can display the byte
+   * level progress (bytes written, throughput, time remaining) of long running
+   * tasks.
+   */
+  public interface ProgressListener
+    extends InstallListener
+  {
+    /**
+     * Invoked on the event dispatch thread, at a limited rate, as the current
+     * task progresses.
+     *
+     * @param progress The task's progress.
+     */
+    public void taskProgress(ByteProgress progress);
+  }
 }
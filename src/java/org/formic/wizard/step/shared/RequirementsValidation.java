@@ -0,0 +1,293 @@
+/**
+ * Formic installer framework.
+ * Copyright (C) 2005 - 2014  Eric Van Dewoestine
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.formic.wizard.step.shared;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import org.formic.Installer;
+
+import org.formic.wizard.step.AbstractStep;
+
+import org.formic.wizard.step.gui.RequirementsValidationStep.Requirement;
+import org.formic.wizard.step.gui.RequirementsValidationStep.RequirementProvider;
+
+/**
+ * Validates a set of requirements concurrently, at most <code>threads</code>
+ * at a time, applying a timeout to each one.
+ * <p/>
+ * Every requirement is always given a status: a provider which throws, or
+ * returns no status, fails the requirement.  A requirement which times out is
+ * given the timeout status and no longer counts against the number of running
+ * validations; its thread is abandoned and any late result ignored.
+ * <p/>
+ * The requirements steps configure the validation from their
+ * <code>threads</code>, <code>timeout</code> (in seconds) and
+ * <code>timeout.status</code> (warn or fail) properties.
+ *
+ * @author Eric Van Dewoestine
+ */
+public class RequirementsValidation
+{
+  public static final String THREADS = "threads";
+  public static final String TIMEOUT = "timeout";
+  public static final String TIMEOUT_STATUS = "timeout.status";
+
+  private static final int DEFAULT_THREADS = 4;
+  private static final long DEFAULT_TIMEOUT = 30;
+
+  private RequirementProvider provider;
+  private int threads;
+  private long timeout;
+  private int timeoutStatus;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param provider The provider validating each requirement.
+   * @param threads The maximum number of concurrent validations.
+   * @param timeout The number of milliseconds to wait for a requirement to be
+   * validated (0 to wait indefinitely).
+   * @param timeoutStatus The status code of a requirement which timed out.
+   */
+  public RequirementsValidation(
+      RequirementProvider provider, int threads, long timeout, int timeoutStatus)
+  {
+    this.provider = provider;
+    this.threads = Math.max(1, threads);
+    this.timeout = timeout;
+    this.timeoutStatus = timeoutStatus;
+  }
+
+  /**
+   * Constructs a new instance configured from the supplied step's properties.
+   *
+   * @param provider The provider validating each requirement.
+   * @param step The step whose properties configure the validation.
+   */
+  public RequirementsValidation(RequirementProvider provider, AbstractStep step)
+  {
+    this(provider,
+        (int)getNumber(step, THREADS, DEFAULT_THREADS),
+        getNumber(step, TIMEOUT, DEFAULT_TIMEOUT) * 1000,
+        getTimeoutStatus(step));
+  }
+
+  /**
+   * Gets the numeric value of the supplied step property.
+   *
+   * @param step The step.
+   * @param name The property name.
+   * @param defaultValue The value to use if the property is not set.
+   * @return The value.
+   */
+  private static long getNumber(
+      AbstractStep step, String name, long defaultValue)
+  {
+    String value = step.getProperty(name);
+    if(value == null){
+      return defaultValue;
+    }
+    try{
+      return Long.parseLong(value.trim());
+    }catch(NumberFormatException nfe){
+      throw new IllegalArgumentException(Installer.getString(
+            AbstractStep.PROPERTY_INVALID,
+            new Object[]{name, step.getName(), value}));
+    }
+  }
+
+  /**
+   * Gets the status code for timed out requirements from the supplied step's
+   * properties.
+   *
+   * @param step The step.
+   * @return The status code.
+   */
+  private static int getTimeoutStatus(AbstractStep step)
+  {
+    String status = step.getProperty(TIMEOUT_STATUS);
+    if(status == null || "warn".equalsIgnoreCase(status)){
+      return RequirementProvider.WARN;
+    }
+    if("fail".equalsIgnoreCase(status)){
+      return RequirementProvider.FAIL;
+    }
+    throw new IllegalArgumentException(Installer.getString(
+          AbstractStep.PROPERTY_INVALID,
+          new Object[]{TIMEOUT_STATUS, step.getName(), status}));
+  }
+
+  /**
+   * Validates the supplied requirements, setting the status of each, and
+   * blocking until all have completed or timed out.
+   *
+   * @param requirements The requirements to validate.
+   * @param listener Listener notified as each requirement completes, or null
+   * for none.
+   */
+  public void validate(Requirement[] requirements, Listener listener)
+    throws InterruptedException
+  {
+    new Run(requirements, listener).run();
+  }
+
+  /**
+   * Listener notified as each requirement's validation completes.
+   */
+  public static interface Listener
+  {
+    /**
+     * Invoked, while the validation holds its lock, once the requirement at
+     * the supplied index has been given its status.
+     *
+     * @param index The index of the requirement in the validated array.
+     * @param requirement The requirement.
+     */
+    public void completed(int index, Requirement requirement);
+  }
+
+  /**
+   * Holds the state of a single validation run.
+   */
+  private class Run
+  {
+    private Requirement[] requirements;
+    private Listener listener;
+    private LinkedList pending = new LinkedList();
+    private Map running = new HashMap();
+    private int remaining;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param requirements The requirements to validate.
+     * @param listener The listener, or null for none.
+     */
+    public Run(Requirement[] requirements, Listener listener)
+    {
+      this.requirements = requirements;
+      this.listener = listener;
+      for (int ii = 0; ii < requirements.length; ii++){
+        pending.add(new Integer(ii));
+      }
+      this.remaining = requirements.length;
+    }
+
+    /**
+     * Validates the requirements, blocking until all have completed or timed
+     * out.
+     */
+    public synchronized void run()
+      throws InterruptedException
+    {
+      startNext();
+      while(remaining > 0){
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+
+        List expired = new ArrayList();
+        for (Iterator ii = running.entrySet().iterator(); ii.hasNext();){
+          Map.Entry entry = (Map.Entry)ii.next();
+          long deadline = ((Long)entry.getValue()).longValue();
+          if(deadline <= now){
+            expired.add(entry.getKey());
+            ii.remove();
+          }else{
+            next = Math.min(next, deadline);
+          }
+        }
+
+        for (Iterator ii = expired.iterator(); ii.hasNext();){
+          completed(((Integer)ii.next()).intValue(),
+              new RequirementProvider.Status(timeoutStatus, Installer.getString(
+                  "requirements.timeout", new Long(timeout / 1000))));
+        }
+
+        if(expired.size() > 0){
+          startNext();
+        }else if(remaining > 0){
+          wait(next == Long.MAX_VALUE ? 0 : next - now);
+        }
+      }
+    }
+
+    /**
+     * Starts validating pending requirements while below the thread limit.
+     */
+    private void startNext()
+    {
+      while(running.size() < threads && !pending.isEmpty()){
+        final Integer index = (Integer)pending.removeFirst();
+        final Requirement requirement = requirements[index.intValue()];
+
+        long deadline = timeout > 0 ?
+          System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        running.put(index, new Long(deadline));
+
+        Thread thread = new Thread("requirement-" + requirement.getKey()){
+          public void run(){
+            RequirementProvider.Status status = null;
+            try{
+              status = provider.validate(requirement);
+            }catch(Throwable t){
+              status = new RequirementProvider.Status(
+                  RequirementProvider.FAIL, t.getMessage());
+            }
+            // a missing status counts as a failure so that the requirement
+            // is always completed.
+            if(status == null){
+              status = new RequirementProvider.Status(
+                  RequirementProvider.FAIL, StringUtils.EMPTY);
+            }
+            finished(index, status);
+          }
+        };
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+
+    private synchronized void finished(
+        Integer index, RequirementProvider.Status status)
+    {
+      // null if the requirement already timed out.
+      if(running.remove(index) != null){
+        completed(index.intValue(), status);
+        startNext();
+        notifyAll();
+      }
+    }
+
+    private void completed(int index, RequirementProvider.Status status)
+    {
+      requirements[index].setStatus(status);
+      remaining--;
+      if(listener != null){
+        listener.completed(index, requirements[index]);
+      }
+    }
+  }
+}
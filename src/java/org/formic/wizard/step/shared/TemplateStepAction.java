@@ -18,9 +18,11 @@
  */
 package org.formic.wizard.step.shared;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 
@@ -42,29 +44,50 @@ public class TemplateStepAction
   public static final String OS_KEY = "os";
   public static final Os OS = new Os();
 
+  private Map results = new HashMap();
+  private Map versions = new HashMap();
+
   /**
    * Processes the supplied template file and returns the result.
+   * <p/>
+   * The result is reused until a value in the install context changes.
    *
    * @param template The template file.
    * @return The template evaluation result.
    */
-  public String processTemplate(String template)
+  public synchronized String processTemplate(String template)
   {
+    Integer version = new Integer(Installer.getContext().getVersion());
+    if(version.equals(versions.get(template))){
+      return (String)results.get(template);
+    }
+
     HashMap values = new HashMap();
 
     values.put(INSTALLER_KEY, INSTALLER);
     values.put(OS_KEY, OS);
 
     InputStream in = null;
+    String result = null;
     try{
-      in = TemplateStepAction.class.getResourceAsStream(template);
-      return in != null ?
-        TemplateUtils.evaluate(in, values) :
-        TemplateUtils.evaluate(template, values);
+      if(TemplateUtils.isCached(template)){
+        result = TemplateUtils.evaluate(template, (InputStream)null, values);
+      }else{
+        // the template is either a resource path or the template itself.
+        in = TemplateStepAction.class.getResourceAsStream(template);
+        if(in == null){
+          in = new ByteArrayInputStream(template.getBytes());
+        }
+        result = TemplateUtils.evaluate(template, in, values);
+      }
     }catch(Exception e){
       throw new RuntimeException(e);
     }finally{
       IOUtils.closeQuietly(in);
     }
+
+    results.put(template, result);
+    versions.put(template, version);
+    return result;
   }
 }